@@ -18,9 +18,5 @@ public class PackageController {
         return ResponseEntity.ok("Create package endpoint stub");
     }
 
-    @PatchMapping("/{id}/reminder")
-    public ResponseEntity<?> updateReminder(@PathVariable String id) {
-        // TODO: Implement update reminder logic
-        return ResponseEntity.ok("Update reminder endpoint stub");
-    }
+    // Reminder updates moved to PATCH /api/beers/reminders in the main application
 } 
\ No newline at end of file
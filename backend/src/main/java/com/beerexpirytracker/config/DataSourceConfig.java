@@ -0,0 +1,158 @@
+package com.beerexpirytracker.config;
+
+import com.beerexpirytracker.service.UserShardRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Only active when read replicas or further shards are configured; otherwise Spring Boot's single primary
+// pool is used
+@Configuration
+@ConditionalOnExpression("!'${datasource.replica.urls:}'.isBlank() || !'${datasource.shards.urls:}'.isBlank()")
+public class DataSourceConfig {
+    
+    @Value("${datasource.replica.urls:}")
+    private String[] replicaUrls;
+    
+    @Value("${datasource.replica.username:${spring.datasource.username}}")
+    private String replicaUsername;
+    
+    @Value("${datasource.replica.password:${spring.datasource.password}}")
+    private String replicaPassword;
+    
+    // Reads that can tolerate this much staleness go to replicas; beyond it they fall back to the primary
+    @Value("${datasource.replica.max-lag-ms:1000}")
+    private long maxLagMillis;
+    
+    // Seconds of replay lag; zero when the replica has replayed everything it has received
+    @Value("${datasource.replica.lag-query:SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END}")
+    private String lagQuery;
+    
+    // Databases after the default shard (spring.datasource), in order; only ever append to the list
+    @Value("${datasource.shards.urls:}")
+    private String[] shardUrls;
+    
+    @Value("${datasource.shards.username:${spring.datasource.username}}")
+    private String shardUsername;
+    
+    @Value("${datasource.shards.password:${spring.datasource.password}}")
+    private String shardPassword;
+    
+    private ReplicaRoutingDataSource routingDataSource;
+    
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, Environment environment, MeterRegistry meterRegistry) {
+        HikariDataSource primary = pool(properties.initializeDataSourceBuilder().type(HikariDataSource.class).build(),
+                "primary", environment, meterRegistry);
+        
+        // Replicas serve the default shard only
+        DataSource defaultShard = replicaUrls.length > 0
+                ? replicaRouting(primary, properties, environment, meterRegistry)
+                : primary;
+        if (shardUrls.length == 0) {
+            return new LazyConnectionDataSourceProxy(defaultShard);
+        }
+        
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        shards.put(ShardRoutingDataSource.DEFAULT_SHARD, defaultShard);
+        for (int i = 0; i < shardUrls.length; i++) {
+            String name = ShardRoutingDataSource.shardName(i + 1);
+            HikariDataSource shard = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                    .url(shardUrls[i].trim())
+                    .username(shardUsername)
+                    .password(shardPassword)
+                    .build();
+            shards.put(name, pool(shard, name, environment, meterRegistry));
+        }
+        ShardRoutingDataSource shardRouting = new ShardRoutingDataSource(shards);
+        shardRouting.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(shardRouting);
+    }
+    
+    // Spring Boot only migrates the default shard; the same migrations run on every other one
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(UserShardRouter userShardRouter) {
+        return flyway -> {
+            for (String shard : userShardRouter.getShards()) {
+                userShardRouter.runOn(shard, flyway::migrate);
+            }
+        };
+    }
+    
+    private DataSource replicaRouting(HikariDataSource primary, DataSourceProperties properties,
+                                      Environment environment, MeterRegistry meterRegistry) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaUrls.length; i++) {
+            String name = "replica-" + (i + 1);
+            HikariDataSource replica = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                    .url(replicaUrls[i].trim())
+                    .username(replicaUsername)
+                    .password(replicaPassword)
+                    .build();
+            replica.setReadOnly(true);
+            replicas.put(name, pool(replica, name, environment, meterRegistry));
+        }
+        
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas, maxLagMillis, lagQuery);
+        routingDataSource.afterPropertiesSet();
+        routingDataSource.checkReplicas();
+        for (String name : routingDataSource.getReplicaNames()) {
+            Gauge.builder("datasource.replica.lag", routingDataSource, routing -> routing.getLagMillis(name))
+                    .tag("target", name)
+                    .description("Replay lag of the read replica in milliseconds, -1 when unreachable")
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("datasource.replica.usable", routingDataSource, routing -> routing.isUsable(name) ? 1 : 0)
+                    .tag("target", name)
+                    .description("Whether read-only transactions are currently routed to the replica")
+                    .register(meterRegistry);
+        }
+        return routingDataSource;
+    }
+    
+    // The pools aren't beans themselves, so nothing else would close them
+    @PreDestroy
+    public void closePools() {
+        pools.forEach(HikariDataSource::close);
+    }
+    
+    @Scheduled(fixedDelayString = "${datasource.replica.check-interval-ms:5000}")
+    public void checkReplicas() {
+        if (routingDataSource != null) {
+            routingDataSource.checkReplicas();
+        }
+    }
+    
+    // Applies spring.datasource.hikari.* to every pool; Hikari's own metrics are tagged with the pool name
+    private HikariDataSource pool(HikariDataSource dataSource, String name, Environment environment,
+                                  MeterRegistry meterRegistry) {
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(name);
+        dataSource.setMetricRegistry(meterRegistry);
+        pools.add(dataSource);
+        return dataSource;
+    }
+}
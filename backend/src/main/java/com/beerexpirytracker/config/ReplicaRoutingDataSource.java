@@ -0,0 +1,122 @@
+package com.beerexpirytracker.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to a replica and everything else to the primary. Replicas are checked
+ * periodically and skipped while unreachable or lagging more than the allowed replay delay; with no
+ * usable replica, read-only work falls back to the primary. Must sit behind a
+ * {@code LazyConnectionDataSourceProxy}, so the connection is only picked once the transaction's
+ * read-only flag is known.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    
+    static final String PRIMARY = "primary";
+    
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagMillis;
+    private final String lagQuery;
+    private final AtomicInteger next = new AtomicInteger();
+    
+    // Replicas currently eligible for reads; replaced as a whole by each check
+    private volatile List<String> usable = List.of();
+    
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicaPools, long maxLagMillis,
+                                    String lagQuery) {
+        this.maxLagMillis = maxLagMillis;
+        this.lagQuery = lagQuery;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicaPools.forEach((name, pool) -> {
+            targets.put(name, pool);
+            replicas.add(new Replica(name, pool));
+        });
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        List<String> candidates = usable;
+        if (candidates.isEmpty()) {
+            return PRIMARY;
+        }
+        return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+    
+    // Measures each replica's replay lag and rebuilds the set of replicas reads may go to
+    public void checkReplicas() {
+        List<String> healthy = new ArrayList<>();
+        for (Replica replica : replicas) {
+            long lag = measureLag(replica);
+            boolean wasUsable = usable.contains(replica.name);
+            boolean nowUsable = lag >= 0 && lag <= maxLagMillis;
+            if (wasUsable != nowUsable) {
+                logger.warn("Replica {} is {} (lag {} ms)", replica.name, nowUsable ? "back in rotation" : "out of rotation",
+                        lag >= 0 ? lag : "unknown");
+            }
+            replica.lagMillis = lag;
+            if (nowUsable) {
+                healthy.add(replica.name);
+            }
+        }
+        usable = List.copyOf(healthy);
+    }
+    
+    public List<String> getReplicaNames() {
+        return replicas.stream().map(replica -> replica.name).toList();
+    }
+    
+    // Last measured lag in milliseconds, or -1 when the replica couldn't be reached
+    public long getLagMillis(String replicaName) {
+        return replicas.stream().filter(replica -> replica.name.equals(replicaName))
+                .findFirst().map(replica -> replica.lagMillis).orElse(-1L);
+    }
+    
+    public boolean isUsable(String replicaName) {
+        return usable.contains(replicaName);
+    }
+    
+    private long measureLag(Replica replica) {
+        try (Connection connection = replica.dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(5);
+            try (ResultSet result = statement.executeQuery(lagQuery)) {
+                // NULL means the server isn't replaying WAL (e.g. a standalone database used locally): no lag
+                return result.next() ? Math.max(0, Math.round(result.getDouble(1) * 1000)) : 0;
+            }
+        } catch (Exception e) {
+            logger.debug("Lag check on replica {} failed: {}", replica.name, e.getMessage());
+            return -1;
+        }
+    }
+    
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile long lagMillis = -1;
+        
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.beerexpirytracker.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Off while the shard rebalancer runs, so no job touches users that are being moved
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "shard.rebalance.enabled", havingValue = "false", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -0,0 +1,44 @@
+package com.beerexpirytracker.config;
+
+import com.beerexpirytracker.service.ShardRebalanceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// Runs the shard rebalancer instead of serving, then exits: start the application with
+// --shard.rebalance.enabled=true --spring.main.web-application-type=none once a shard URL has been
+// appended, while every other node is stopped. Scheduled jobs don't run in this mode.
+@Component
+@ConditionalOnProperty(name = "shard.rebalance.enabled", havingValue = "true")
+public class ShardRebalanceRunner implements ApplicationRunner {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalanceRunner.class);
+    
+    @Autowired
+    private ShardRebalanceService shardRebalanceService;
+    
+    @Autowired
+    private ApplicationContext applicationContext;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        int exitCode = 0;
+        try {
+            Map<String, Object> report = shardRebalanceService.rebalance();
+            logger.info("Shard rebalance finished: {}", report);
+        } catch (RuntimeException e) {
+            logger.error("Shard rebalance failed; run it again to finish the remaining users", e);
+            exitCode = 1;
+        }
+        int status = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> status));
+    }
+}
@@ -0,0 +1,56 @@
+package com.beerexpirytracker.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends connections to the database shard bound to the current thread, or to the default shard
+ * ({@code spring.datasource}) when none is bound. Shards are bound by {@code UserShardRouter} before a
+ * transaction starts; like the replica routing, it must sit behind a {@code LazyConnectionDataSourceProxy}.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+    
+    public static final String DEFAULT_SHARD = "shard-0";
+    
+    private static final ThreadLocal<String> currentShard = new ThreadLocal<>();
+    
+    public ShardRoutingDataSource(Map<String, DataSource> shards) {
+        setTargetDataSources(new HashMap<>(shards));
+        setDefaultTargetDataSource(shards.get(DEFAULT_SHARD));
+        // A misspelt shard must fail rather than quietly use the default one
+        setLenientFallback(false);
+    }
+    
+    // Shards after the default one are named by their position in datasource.shards.urls, starting at 1
+    public static String shardName(int index) {
+        return "shard-" + index;
+    }
+    
+    public static String getCurrentShard() {
+        String shard = currentShard.get();
+        return shard != null ? shard : DEFAULT_SHARD;
+    }
+    
+    // Returns the shard that was bound before, for restoring it afterwards
+    public static String bind(String shard) {
+        String previous = currentShard.get();
+        currentShard.set(shard);
+        return previous;
+    }
+    
+    public static void restore(String previous) {
+        if (previous == null) {
+            currentShard.remove();
+        } else {
+            currentShard.set(previous);
+        }
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return getCurrentShard();
+    }
+}
@@ -0,0 +1,72 @@
+package com.beerexpirytracker.controller;
+
+import com.beerexpirytracker.dto.SimulationReport;
+import com.beerexpirytracker.dto.SimulationRequest;
+import com.beerexpirytracker.service.ReminderPolicyService;
+import com.beerexpirytracker.service.ReminderSimulationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@CrossOrigin(origins = "*", maxAge = 3600)
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminController {
+    
+    @Autowired
+    private ReminderSimulationService reminderSimulationService;
+    
+    @Autowired
+    private ReminderPolicyService reminderPolicyService;
+    
+    // Starts a dry run of the reminder release against a generated dataset; poll the GET for the report
+    @PostMapping("/reminders/simulation")
+    public ResponseEntity<?> startReminderSimulation(@RequestBody(required = false) SimulationRequest request) {
+        try {
+            if (!reminderSimulationService.start(request != null ? request : new SimulationRequest())) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(createErrorResponse("A simulation is already running"));
+            }
+            return ResponseEntity.accepted().body(reminderSimulationService.getLastReport());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/reminders/simulation")
+    public ResponseEntity<?> getReminderSimulation() {
+        SimulationReport report = reminderSimulationService.getLastReport();
+        if (report == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(report);
+    }
+    
+    // Global lead time for one beer type (or the overall default); omitting leadDays removes it
+    @PutMapping("/reminder-policy")
+    public ResponseEntity<?> updateReminderPolicy(@RequestBody Map<String, String> policyRequest) {
+        try {
+            String leadDays = policyRequest.get("leadDays");
+            Map<String, Object> report = reminderPolicyService.setLeadDays(
+                    null,
+                    policyRequest.get("beerType"),
+                    leadDays != null ? Integer.valueOf(leadDays) : null);
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
+    private Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", message);
+        return response;
+    }
+}
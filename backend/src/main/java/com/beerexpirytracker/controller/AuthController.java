@@ -3,10 +3,10 @@ package com.beerexpirytracker.controller;
 import com.beerexpirytracker.dto.JwtResponse;
 import com.beerexpirytracker.dto.LoginRequest;
 import com.beerexpirytracker.dto.RegisterRequest;
-import com.beerexpirytracker.model.User;
 import com.beerexpirytracker.security.JwtUtils;
 import com.beerexpirytracker.security.UserDetailsImpl;
 import com.beerexpirytracker.service.UserService;
+import com.beerexpirytracker.service.UserShardRouter;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -33,6 +33,9 @@ public class AuthController {
     @Autowired
     private JwtUtils jwtUtils;
     
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
     @PostMapping("/login")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
         Authentication authentication = authenticationManager.authenticate(
@@ -43,9 +46,10 @@ public class AuthController {
         
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
         
-        // Update device token if provided
+        // Register the device if provided; the principal already has the id, so no user lookup is needed
         if (loginRequest.getDeviceToken() != null && !loginRequest.getDeviceToken().isEmpty()) {
-            userService.updateDeviceToken(userDetails.getUsername(), loginRequest.getDeviceToken());
+            userShardRouter.runForUser(userDetails.getId(),
+                    () -> userService.registerDevice(userDetails.getId(), loginRequest.getDeviceToken()));
         }
         
         return ResponseEntity.ok(new JwtResponse(
@@ -67,12 +71,16 @@ public class AuthController {
             return ResponseEntity.badRequest().body(createErrorResponse("Email is already in use!"));
         }
         
-        // Create new user
-        User user = userService.createUser(
-                registerRequest.getUsername(),
-                registerRequest.getEmail(),
-                registerRequest.getPassword(),
-                registerRequest.getDeviceToken());
+        // Create new user; the checks above can still lose a race with a concurrent registration
+        try {
+            userService.createUser(
+                    registerRequest.getUsername(),
+                    registerRequest.getEmail(),
+                    registerRequest.getPassword(),
+                    registerRequest.getDeviceToken());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
         
         return ResponseEntity.ok(createSuccessResponse("User registered successfully!"));
     }
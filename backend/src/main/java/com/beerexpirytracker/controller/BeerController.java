@@ -1,10 +1,17 @@
 package com.beerexpirytracker.controller;
 
 import com.beerexpirytracker.dto.BeerDTO;
+import com.beerexpirytracker.dto.ReminderBulkUpdateRequest;
 import com.beerexpirytracker.security.UserDetailsImpl;
+import com.beerexpirytracker.service.BeerImageService;
 import com.beerexpirytracker.service.BeerService;
+import com.beerexpirytracker.service.ImageCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -13,10 +20,18 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 @RestController
@@ -27,9 +42,18 @@ public class BeerController {
     @Autowired
     private BeerService beerService;
     
+    @Autowired
+    private BeerImageService beerImageService;
+    
+    @Autowired
+    private ImageCache imageCache;
+    
+    // Beers long past their expiry date are archived and only listed when includeArchived is set
     @GetMapping
-    public ResponseEntity<List<BeerDTO>> getAllBeers(@AuthenticationPrincipal UserDetailsImpl userDetails) {
-        List<BeerDTO> beers = beerService.getAllBeersByUser(userDetails.getId());
+    public ResponseEntity<List<BeerDTO>> getAllBeers(
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        List<BeerDTO> beers = beerService.getAllBeersByUser(userDetails.getId(), includeArchived);
         return ResponseEntity.ok(beers);
     }
     
@@ -41,11 +65,98 @@ public class BeerController {
         return ResponseEntity.ok(beer);
     }
     
+    // Serves an image file of the user's beer. Versioned URLs (see BeerImageService.imageUrl) are cached
+    // forever; conditional and range requests are answered without re-sending the file.
+    @GetMapping("/{id}/image")
+    public void getBeerImage(
+            @PathVariable UUID id,
+            @RequestParam(value = "size", required = false) String size,
+            @RequestParam(value = "v", required = false) String version,
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        BeerImageService.Size imageSize;
+        try {
+            imageSize = BeerImageService.parseSize(size);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        
+        Optional<BeerImageService.ImageFile> found = beerImageService.findImage(id, userDetails.getId(), imageSize);
+        if (found.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        BeerImageService.ImageFile image = found.get();
+        Path path = image.getPath();
+        // Thumbnails of processed uploads are served from memory; everything else from disk
+        ByteBuffer cached = image.getContentHash() != null && imageSize != BeerImageService.Size.ORIGINAL
+                ? imageCache.get(path) : null;
+        if (cached == null && !Files.isRegularFile(path)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long length = cached != null ? cached.remaining() : Files.size(path);
+        
+        String etag = image.getContentHash() != null
+                ? "\"" + image.getContentHash() + "-" + imageSize.name().toLowerCase() + "\""
+                : "W/\"" + length + "-" + Files.getLastModifiedTime(path).toMillis() + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        // Only a URL carrying the current content hash may be cached without revalidation
+        response.setHeader(HttpHeaders.CACHE_CONTROL, image.matchesVersion(version)
+                ? "private, max-age=31536000, immutable"
+                : "private, no-cache");
+        
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        
+        response.setContentType(image.getContentType());
+        long start = 0;
+        long count = length;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // A stale If-Range means the client's partial copy is outdated, so it gets the whole file
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                count = bounds[1] - bounds[0] + 1;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + bounds[0] + "-" + bounds[1] + "/" + length);
+            }
+        }
+        
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        if (cached != null) {
+            cached.position((int) start).limit((int) (start + count));
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            while (cached.hasRemaining()) {
+                out.write(cached);
+            }
+        } else {
+            sendFile(request, response, path, start, count);
+        }
+    }
+    
     @GetMapping("/search")
     public ResponseEntity<List<BeerDTO>> searchBeers(
             @RequestParam String query,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
             @AuthenticationPrincipal UserDetailsImpl userDetails) {
-        List<BeerDTO> beers = beerService.searchBeers(query, userDetails.getId());
+        List<BeerDTO> beers = beerService.searchBeers(query, userDetails.getId(), includeArchived);
         return ResponseEntity.ok(beers);
     }
     
@@ -122,6 +233,20 @@ public class BeerController {
         }
     }
     
+    @PatchMapping("/reminders")
+    public ResponseEntity<?> bulkUpdateReminders(
+            @Valid @RequestBody ReminderBulkUpdateRequest request,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        try {
+            int updated = beerService.bulkUpdateReminders(request, userDetails.getId());
+            Map<String, Object> response = createSuccessResponse("Reminders updated successfully");
+            response.put("updated", updated);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteBeer(
             @PathVariable UUID id,
@@ -134,6 +259,82 @@ public class BeerController {
         }
     }
     
+    // Lets Tomcat hand the file to the kernel (sendfile) when its connector supports it; otherwise the
+    // file channel transfers straight into the response without copying through a heap buffer per chunk
+    private void sendFile(HttpServletRequest request, HttpServletResponse response, Path path, long start, long count)
+            throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            request.setAttribute("org.apache.tomcat.sendfile.filename", path.toAbsolutePath().toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", start);
+            request.setAttribute("org.apache.tomcat.sendfile.end", start + count);
+            return;
+        }
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+    
+    private boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            // Weak comparison, as required for If-None-Match
+            if (candidate.equals("*") || (candidate.startsWith("W/") ? candidate.substring(2) : candidate).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    // Single byte range as {first, last}; an empty array means serve the whole file (multiple ranges or
+    // a header we don't understand), null means the range can't be satisfied
+    private long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long first;
+            long last;
+            if (dash == 0) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                first = Math.max(0, length - suffix);
+                last = length - 1;
+            } else {
+                first = Long.parseLong(spec.substring(0, dash));
+                last = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+            }
+            if (first >= length || first > last) {
+                return null;
+            }
+            return new long[] {first, last};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+    
     private Map<String, Object> createErrorResponse(String message) {
         Map<String, Object> response = new HashMap<>();
         response.put("success", false);
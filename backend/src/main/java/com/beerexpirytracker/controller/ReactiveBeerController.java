@@ -0,0 +1,61 @@
+package com.beerexpirytracker.controller;
+
+import com.beerexpirytracker.dto.BeerDTO;
+import com.beerexpirytracker.security.UserDetailsImpl;
+import com.beerexpirytracker.service.ReactiveBeerService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+// Non-blocking twins of the BeerController read endpoints. Lists are streamed as newline-delimited JSON,
+// one beer per line as it is read. They still run on Tomcat, as async requests: the request thread goes back
+// to the pool until the database answers, but each open stream holds one of server.tomcat.max-connections.
+@RestController
+@RequestMapping("/api/reactive/beers")
+@CrossOrigin(origins = "*", maxAge = 3600)
+@ConditionalOnProperty(name = "beers.reactive-read.enabled", havingValue = "true")
+public class ReactiveBeerController {
+    
+    @Autowired
+    private ReactiveBeerService reactiveBeerService;
+    
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BeerDTO> getAllBeers(
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return reactiveBeerService.getAllBeersByUser(userDetails.getId(), includeArchived);
+    }
+    
+    @GetMapping(value = "/upcoming", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BeerDTO> getUpcomingExpiringBeers(
+            @RequestParam(defaultValue = "30") int days,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return reactiveBeerService.getUpcomingExpiringBeers(userDetails.getId(), days);
+    }
+    
+    @GetMapping("/stats/expiry-timeline")
+    public Mono<Map<String, Object>> getExpiryTimelineStats(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return reactiveBeerService.getExpiryTimelineStats(userDetails.getId());
+    }
+    
+    @GetMapping("/stats/type-distribution")
+    public Mono<Map<String, Long>> getTypeDistributionStats(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return reactiveBeerService.getTypeDistributionStats(userDetails.getId());
+    }
+    
+    @GetMapping("/stats/brand-distribution")
+    public Mono<Map<String, Long>> getBrandDistributionStats(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return reactiveBeerService.getBrandDistributionStats(userDetails.getId());
+    }
+    
+    @GetMapping("/stats/summary")
+    public Mono<Map<String, Object>> getStatsSummary(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return reactiveBeerService.getStatsSummary(userDetails.getId());
+    }
+}
@@ -2,14 +2,19 @@ package com.beerexpirytracker.controller;
 
 import com.beerexpirytracker.dto.UserDTO;
 import com.beerexpirytracker.security.UserDetailsImpl;
+import com.beerexpirytracker.service.ReminderPolicyService;
 import com.beerexpirytracker.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/users")
@@ -19,6 +24,9 @@ public class UserController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private ReminderPolicyService reminderPolicyService;
+    
     @GetMapping("/profile")
     public ResponseEntity<UserDTO> getCurrentUser(@AuthenticationPrincipal UserDetailsImpl userDetails) {
         UserDTO user = userService.getUserById(userDetails.getId());
@@ -29,16 +37,93 @@ public class UserController {
     public ResponseEntity<?> updateDeviceToken(
             @RequestBody Map<String, String> tokenRequest,
             @AuthenticationPrincipal UserDetailsImpl userDetails) {
-        if (!tokenRequest.containsKey("deviceToken")) {
+        String deviceToken = tokenRequest.get("deviceToken");
+        if (deviceToken == null || deviceToken.isEmpty()) {
             return ResponseEntity.badRequest().body(createErrorResponse("Device token is required"));
         }
         
-        String deviceToken = tokenRequest.get("deviceToken");
-        userService.updateDeviceToken(userDetails.getUsername(), deviceToken);
+        userService.registerDevice(userDetails.getId(), deviceToken);
         
         return ResponseEntity.ok(createSuccessResponse("Device token updated successfully"));
     }
     
+    // Called on logout so the device stops receiving this user's reminders
+    @DeleteMapping("/device-token")
+    public ResponseEntity<?> removeDeviceToken(
+            @RequestBody Map<String, String> tokenRequest,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        if (!tokenRequest.containsKey("deviceToken")) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Device token is required"));
+        }
+        
+        userService.unregisterDevice(userDetails.getId(), tokenRequest.get("deviceToken"));
+        
+        return ResponseEntity.ok(createSuccessResponse("Device token removed successfully"));
+    }
+    
+    @PatchMapping("/reminder-preferences")
+    public ResponseEntity<?> updateReminderPreferences(
+            @RequestBody Map<String, String> preferencesRequest,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        try {
+            String windowStart = preferencesRequest.get("reminderWindowStart");
+            String windowEnd = preferencesRequest.get("reminderWindowEnd");
+            UserDTO user = userService.updateReminderPreferences(
+                    userDetails.getId(),
+                    preferencesRequest.get("timeZone"),
+                    windowStart != null ? LocalTime.parse(windowStart) : null,
+                    windowEnd != null ? LocalTime.parse(windowEnd) : null,
+                    preferencesRequest.get("locale"));
+            return ResponseEntity.ok(user);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
+    // Deletes the account and everything in it; image files are removed in the background afterwards
+    @DeleteMapping("/me")
+    public ResponseEntity<?> deleteAccount(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        Map<String, Object> report = userService.deleteAccount(userDetails.getId());
+        report.put("success", true);
+        report.put("message", "Account deleted successfully");
+        return ResponseEntity.ok(report);
+    }
+    
+    @GetMapping("/reminder-policy")
+    public ResponseEntity<?> getReminderPolicy(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        List<Map<String, Object>> policies = reminderPolicyService.getPolicies(userDetails.getId()).stream()
+                .map(policy -> {
+                    Map<String, Object> entry = new HashMap<>();
+                    entry.put("scope", policy.getUserId() != null ? "user" : "global");
+                    entry.put("beerType", policy.getBeerType());
+                    entry.put("leadDays", policy.getLeadDays());
+                    return entry;
+                })
+                .collect(Collectors.toList());
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("defaultLeadDays", reminderPolicyService.getDefaultLeadDays());
+        response.put("policies", policies);
+        return ResponseEntity.ok(response);
+    }
+    
+    // Sets the user's lead time for one beer type (or all types); omitting leadDays removes the override
+    @PutMapping("/reminder-policy")
+    public ResponseEntity<?> updateReminderPolicy(
+            @RequestBody Map<String, String> policyRequest,
+            @AuthenticationPrincipal UserDetailsImpl userDetails) {
+        try {
+            String leadDays = policyRequest.get("leadDays");
+            Map<String, Object> report = reminderPolicyService.setLeadDays(
+                    userDetails.getId(),
+                    policyRequest.get("beerType"),
+                    leadDays != null ? Integer.valueOf(leadDays) : null);
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+    
     private Map<String, Object> createErrorResponse(String message) {
         Map<String, Object> response = new HashMap<>();
         response.put("success", false);
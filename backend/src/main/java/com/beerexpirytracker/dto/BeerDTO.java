@@ -11,18 +11,28 @@ public class BeerDTO {
     private String type;
     private LocalDate expiryDate;
     private String imageUrl;
+    private String thumbnailUrl;
+    private String detailImageUrl;
+    private String imageState;
+    
+    // Listed from beers_archive; only returned when archived beers were asked for
+    private boolean archived;
     
     // Constructors
     public BeerDTO() {
     }
     
-    public BeerDTO(UUID id, String brandName, String productName, String type, LocalDate expiryDate, String imageUrl) {
+    public BeerDTO(UUID id, String brandName, String productName, String type, LocalDate expiryDate, String imageUrl,
+                   String thumbnailUrl, String detailImageUrl, String imageState) {
         this.id = id;
         this.brandName = brandName;
         this.productName = productName;
         this.type = type;
         this.expiryDate = expiryDate;
         this.imageUrl = imageUrl;
+        this.thumbnailUrl = thumbnailUrl;
+        this.detailImageUrl = detailImageUrl;
+        this.imageState = imageState;
     }
     
     // Getters and Setters
@@ -73,4 +83,36 @@ public class BeerDTO {
     public void setImageUrl(String imageUrl) {
         this.imageUrl = imageUrl;
     }
-} 
\ No newline at end of file
+    
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+    
+    public void setThumbnailUrl(String thumbnailUrl) {
+        this.thumbnailUrl = thumbnailUrl;
+    }
+    
+    public String getDetailImageUrl() {
+        return detailImageUrl;
+    }
+    
+    public void setDetailImageUrl(String detailImageUrl) {
+        this.detailImageUrl = detailImageUrl;
+    }
+    
+    public String getImageState() {
+        return imageState;
+    }
+    
+    public void setImageState(String imageState) {
+        this.imageState = imageState;
+    }
+    
+    public boolean isArchived() {
+        return archived;
+    }
+    
+    public void setArchived(boolean archived) {
+        this.archived = archived;
+    }
+}
\ No newline at end of file
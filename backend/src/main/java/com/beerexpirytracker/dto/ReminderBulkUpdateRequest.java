@@ -0,0 +1,92 @@
+package com.beerexpirytracker.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+// Selects beers either by id list or by filter (all filter fields that are set must match)
+public class ReminderBulkUpdateRequest {
+    
+    public enum Action { SNOOZE, DISMISS }
+    
+    @NotNull(message = "Action is required")
+    private Action action;
+    
+    // Days to push the next reminder out by; required for SNOOZE
+    private Integer days;
+    
+    private List<UUID> ids;
+    
+    private String brandName;
+    private String productName;
+    private String type;
+    private LocalDate expiryFrom;
+    private LocalDate expiryTo;
+    
+    // Getters and Setters
+    public Action getAction() {
+        return action;
+    }
+    
+    public void setAction(Action action) {
+        this.action = action;
+    }
+    
+    public Integer getDays() {
+        return days;
+    }
+    
+    public void setDays(Integer days) {
+        this.days = days;
+    }
+    
+    public List<UUID> getIds() {
+        return ids;
+    }
+    
+    public void setIds(List<UUID> ids) {
+        this.ids = ids;
+    }
+    
+    public String getBrandName() {
+        return brandName;
+    }
+    
+    public void setBrandName(String brandName) {
+        this.brandName = brandName;
+    }
+    
+    public String getProductName() {
+        return productName;
+    }
+    
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+    
+    public String getType() {
+        return type;
+    }
+    
+    public void setType(String type) {
+        this.type = type;
+    }
+    
+    public LocalDate getExpiryFrom() {
+        return expiryFrom;
+    }
+    
+    public void setExpiryFrom(LocalDate expiryFrom) {
+        this.expiryFrom = expiryFrom;
+    }
+    
+    public LocalDate getExpiryTo() {
+        return expiryTo;
+    }
+    
+    public void setExpiryTo(LocalDate expiryTo) {
+        this.expiryTo = expiryTo;
+    }
+}
\ No newline at end of file
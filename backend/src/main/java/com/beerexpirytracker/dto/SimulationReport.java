@@ -0,0 +1,177 @@
+package com.beerexpirytracker.dto;
+
+import java.time.Instant;
+
+public class SimulationReport {
+    
+    public enum Status { RUNNING, COMPLETED, FAILED }
+    
+    private Status status;
+    private String error;
+    private Instant startedAt;
+    private Instant finishedAt;
+    
+    // Dataset
+    private long seededUsers;
+    private long seededBeers;
+    private long seedMs;
+    
+    // Reminder run
+    private long rowsScanned;
+    private long dueReminders;
+    private long pushSends;
+    private long emailSends;
+    private long failedSends;
+    private long queryMs;
+    private long renderMs;
+    private long simulatedSendMs;
+    private long updateMs;
+    private long runMs;
+    private long peakHeapBytes;
+    
+    // Getters and Setters
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+    
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+    
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+    
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+    
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+    
+    public long getSeededUsers() {
+        return seededUsers;
+    }
+    
+    public void setSeededUsers(long seededUsers) {
+        this.seededUsers = seededUsers;
+    }
+    
+    public long getSeededBeers() {
+        return seededBeers;
+    }
+    
+    public void setSeededBeers(long seededBeers) {
+        this.seededBeers = seededBeers;
+    }
+    
+    public long getSeedMs() {
+        return seedMs;
+    }
+    
+    public void setSeedMs(long seedMs) {
+        this.seedMs = seedMs;
+    }
+    
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+    
+    public void setRowsScanned(long rowsScanned) {
+        this.rowsScanned = rowsScanned;
+    }
+    
+    public long getDueReminders() {
+        return dueReminders;
+    }
+    
+    public void setDueReminders(long dueReminders) {
+        this.dueReminders = dueReminders;
+    }
+    
+    public long getPushSends() {
+        return pushSends;
+    }
+    
+    public void setPushSends(long pushSends) {
+        this.pushSends = pushSends;
+    }
+    
+    public long getEmailSends() {
+        return emailSends;
+    }
+    
+    public void setEmailSends(long emailSends) {
+        this.emailSends = emailSends;
+    }
+    
+    public long getFailedSends() {
+        return failedSends;
+    }
+    
+    public void setFailedSends(long failedSends) {
+        this.failedSends = failedSends;
+    }
+    
+    public long getQueryMs() {
+        return queryMs;
+    }
+    
+    public void setQueryMs(long queryMs) {
+        this.queryMs = queryMs;
+    }
+    
+    public long getRenderMs() {
+        return renderMs;
+    }
+    
+    public void setRenderMs(long renderMs) {
+        this.renderMs = renderMs;
+    }
+    
+    public long getSimulatedSendMs() {
+        return simulatedSendMs;
+    }
+    
+    public void setSimulatedSendMs(long simulatedSendMs) {
+        this.simulatedSendMs = simulatedSendMs;
+    }
+    
+    public long getUpdateMs() {
+        return updateMs;
+    }
+    
+    public void setUpdateMs(long updateMs) {
+        this.updateMs = updateMs;
+    }
+    
+    public long getRunMs() {
+        return runMs;
+    }
+    
+    public void setRunMs(long runMs) {
+        this.runMs = runMs;
+    }
+    
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+    
+    public void setPeakHeapBytes(long peakHeapBytes) {
+        this.peakHeapBytes = peakHeapBytes;
+    }
+}
\ No newline at end of file
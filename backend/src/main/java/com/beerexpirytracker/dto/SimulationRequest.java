@@ -0,0 +1,81 @@
+package com.beerexpirytracker.dto;
+
+public class SimulationRequest {
+    
+    // Defaults describe a small dry run; capacity planning passes e.g. beers=10000000
+    private long beers = 100_000;
+    private int beersPerUser = 5;
+    // Share of users with a device token; the rest only get email
+    private double pushShare = 0.7;
+    private boolean simulateLatency = true;
+    private long pushLatencyMs = 80;
+    private long emailLatencyMs = 250;
+    private double failureRate = 0.0;
+    private int pushConcurrency = 8;
+    
+    // Getters and Setters
+    
+    public long getBeers() {
+        return beers;
+    }
+    
+    public void setBeers(long beers) {
+        this.beers = beers;
+    }
+    
+    public int getBeersPerUser() {
+        return beersPerUser;
+    }
+    
+    public void setBeersPerUser(int beersPerUser) {
+        this.beersPerUser = beersPerUser;
+    }
+    
+    public double getPushShare() {
+        return pushShare;
+    }
+    
+    public void setPushShare(double pushShare) {
+        this.pushShare = pushShare;
+    }
+    
+    public boolean isSimulateLatency() {
+        return simulateLatency;
+    }
+    
+    public void setSimulateLatency(boolean simulateLatency) {
+        this.simulateLatency = simulateLatency;
+    }
+    
+    public long getPushLatencyMs() {
+        return pushLatencyMs;
+    }
+    
+    public void setPushLatencyMs(long pushLatencyMs) {
+        this.pushLatencyMs = pushLatencyMs;
+    }
+    
+    public long getEmailLatencyMs() {
+        return emailLatencyMs;
+    }
+    
+    public void setEmailLatencyMs(long emailLatencyMs) {
+        this.emailLatencyMs = emailLatencyMs;
+    }
+    
+    public double getFailureRate() {
+        return failureRate;
+    }
+    
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+    
+    public int getPushConcurrency() {
+        return pushConcurrency;
+    }
+    
+    public void setPushConcurrency(int pushConcurrency) {
+        this.pushConcurrency = pushConcurrency;
+    }
+}
\ No newline at end of file
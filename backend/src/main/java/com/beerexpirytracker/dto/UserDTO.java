@@ -1,5 +1,7 @@
 package com.beerexpirytracker.dto;
 
+import java.time.LocalTime;
+import java.util.List;
 import java.util.UUID;
 
 public class UserDTO {
@@ -7,17 +9,26 @@ public class UserDTO {
     private UUID id;
     private String username;
     private String email;
-    private String deviceToken;
+    private List<String> deviceTokens;
+    private String timeZone;
+    private LocalTime reminderWindowStart;
+    private LocalTime reminderWindowEnd;
+    private String locale;
     
     // Constructors
     public UserDTO() {
     }
     
-    public UserDTO(UUID id, String username, String email, String deviceToken) {
+    public UserDTO(UUID id, String username, String email, List<String> deviceTokens,
+                   String timeZone, LocalTime reminderWindowStart, LocalTime reminderWindowEnd, String locale) {
         this.id = id;
         this.username = username;
         this.email = email;
-        this.deviceToken = deviceToken;
+        this.deviceTokens = deviceTokens;
+        this.timeZone = timeZone;
+        this.reminderWindowStart = reminderWindowStart;
+        this.reminderWindowEnd = reminderWindowEnd;
+        this.locale = locale;
     }
     
     // Getters and Setters
@@ -45,11 +56,43 @@ public class UserDTO {
         this.email = email;
     }
     
-    public String getDeviceToken() {
-        return deviceToken;
+    public List<String> getDeviceTokens() {
+        return deviceTokens;
     }
     
-    public void setDeviceToken(String deviceToken) {
-        this.deviceToken = deviceToken;
+    public void setDeviceTokens(List<String> deviceTokens) {
+        this.deviceTokens = deviceTokens;
     }
-} 
\ No newline at end of file
+    
+    public String getTimeZone() {
+        return timeZone;
+    }
+    
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+    
+    public LocalTime getReminderWindowStart() {
+        return reminderWindowStart;
+    }
+    
+    public void setReminderWindowStart(LocalTime reminderWindowStart) {
+        this.reminderWindowStart = reminderWindowStart;
+    }
+    
+    public LocalTime getReminderWindowEnd() {
+        return reminderWindowEnd;
+    }
+    
+    public void setReminderWindowEnd(LocalTime reminderWindowEnd) {
+        this.reminderWindowEnd = reminderWindowEnd;
+    }
+    
+    public String getLocale() {
+        return locale;
+    }
+    
+    public void setLocale(String locale) {
+        this.locale = locale;
+    }
+}
\ No newline at end of file
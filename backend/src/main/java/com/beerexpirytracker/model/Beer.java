@@ -3,15 +3,19 @@ package com.beerexpirytracker.model;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import org.springframework.data.domain.Persistable;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.UUID;
 
 @Entity
+// Partitioned by expiry month; the partitions and indexes (including the partial reminder index JPA
+// can't express) are in the Flyway migrations
 @Table(name = "beers")
-public class Beer {
+public class Beer implements Persistable<UUID> {
     
+    // Assigned by the application, so files can be stored under the id before the row is inserted
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
     
     @NotBlank(message = "Brand name is required")
@@ -28,18 +32,68 @@ public class Beer {
     @NotNull(message = "Reminder date is required")
     private LocalDate reminderDate;
     
+    // Set by a snooze (PATCH /api/beers/reminders); a recomputed reminder date never falls before it
+    private LocalDate reminderSnoozedUntil;
+    
     private String imageUrl;
     
+    // Resized copies for the beer list and the detail view, written by ImageProcessingService
+    private String thumbnailUrl;
+    
+    private String detailImageUrl;
+    
+    // Null when the beer has no image
+    @Enumerated(EnumType.STRING)
+    private ImageState imageState;
+    
+    // SHA-256 of the original upload (hex); versions the image URLs so they can be cached forever
+    private String imageHash;
+    
     private boolean reminderSent = false;
     
     private int reminderCount = 0;
     
+    private LocalDate lastReminderDate;
+    
+    // Reminder attempts where no channel succeeded; the column and its default come from V1__initial_schema.sql
+    @Column(columnDefinition = "integer not null default 0")
+    private int reminderFailureCount = 0;
+    
+    // Lets other nodes pick up changes to their in-memory reminder schedule
+    private Instant updatedAt;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
     
+    // With an assigned id Spring Data can't tell new beers from detached ones; this makes save() insert
+    // them directly instead of merging, which would select first
+    @Transient
+    private boolean newEntity = true;
+    
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        if (id == null) {
+            id = UuidV7.generate();
+        }
+        updatedAt = Instant.now();
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        newEntity = false;
+    }
+    
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+    
     // Getters and Setters
     
+    @Override
     public UUID getId() {
         return id;
     }
@@ -76,10 +130,9 @@ public class Beer {
         return expiryDate;
     }
     
+    // The reminder date depends on the lead-time policy, so callers set it alongside (see ReminderPolicyService)
     public void setExpiryDate(LocalDate expiryDate) {
         this.expiryDate = expiryDate;
-        // Calculate reminder date as 45 days before expiry date
-        this.reminderDate = expiryDate.minusDays(45);
     }
     
     public LocalDate getReminderDate() {
@@ -90,6 +143,14 @@ public class Beer {
         this.reminderDate = reminderDate;
     }
     
+    public LocalDate getReminderSnoozedUntil() {
+        return reminderSnoozedUntil;
+    }
+    
+    public void setReminderSnoozedUntil(LocalDate reminderSnoozedUntil) {
+        this.reminderSnoozedUntil = reminderSnoozedUntil;
+    }
+    
     public String getImageUrl() {
         return imageUrl;
     }
@@ -98,6 +159,38 @@ public class Beer {
         this.imageUrl = imageUrl;
     }
     
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+    
+    public void setThumbnailUrl(String thumbnailUrl) {
+        this.thumbnailUrl = thumbnailUrl;
+    }
+    
+    public String getDetailImageUrl() {
+        return detailImageUrl;
+    }
+    
+    public void setDetailImageUrl(String detailImageUrl) {
+        this.detailImageUrl = detailImageUrl;
+    }
+    
+    public ImageState getImageState() {
+        return imageState;
+    }
+    
+    public void setImageState(ImageState imageState) {
+        this.imageState = imageState;
+    }
+    
+    public String getImageHash() {
+        return imageHash;
+    }
+    
+    public void setImageHash(String imageHash) {
+        this.imageHash = imageHash;
+    }
+    
     public boolean isReminderSent() {
         return reminderSent;
     }
@@ -114,6 +207,30 @@ public class Beer {
         this.reminderCount = reminderCount;
     }
     
+    public LocalDate getLastReminderDate() {
+        return lastReminderDate;
+    }
+    
+    public void setLastReminderDate(LocalDate lastReminderDate) {
+        this.lastReminderDate = lastReminderDate;
+    }
+    
+    public int getReminderFailureCount() {
+        return reminderFailureCount;
+    }
+    
+    public void setReminderFailureCount(int reminderFailureCount) {
+        this.reminderFailureCount = reminderFailureCount;
+    }
+    
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+    
     public User getUser() {
         return user;
     }
@@ -121,4 +238,4 @@ public class Beer {
     public void setUser(User user) {
         this.user = user;
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.beerexpirytracker.model;
+
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.UUID;
+
+// Primary key of a beer. beers is partitioned by expiry month (V5), so a statement that has the expiry date
+// next to the id only looks in that month's partition; by id alone it probes the index of every partition.
+public final class BeerKey {
+    
+    private final UUID id;
+    private final LocalDate expiryDate;
+    
+    public BeerKey(UUID id, LocalDate expiryDate) {
+        this.id = id;
+        this.expiryDate = expiryDate;
+    }
+    
+    public static BeerKey of(Beer beer) {
+        return new BeerKey(beer.getId(), beer.getExpiryDate());
+    }
+    
+    public UUID getId() {
+        return id;
+    }
+    
+    public LocalDate getExpiryDate() {
+        return expiryDate;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BeerKey)) {
+            return false;
+        }
+        BeerKey other = (BeerKey) o;
+        return id.equals(other.id) && expiryDate.equals(other.expiryDate);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, expiryDate);
+    }
+    
+    @Override
+    public String toString() {
+        return id + "@" + expiryDate;
+    }
+}
@@ -0,0 +1,101 @@
+package com.beerexpirytracker.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// One stored image, keyed by the SHA-256 of the original upload and shared by every beer with that image
+@Entity
+@Table(name = "image_blobs",
+       indexes = @Index(name = "idx_image_blobs_unreferenced_since", columnList = "unreferenced_since"))
+public class ImageBlob {
+    
+    // Hex SHA-256 of the original
+    @Id
+    @Column(length = 64)
+    private String hash;
+    
+    @Column(nullable = false)
+    private String originalPath;
+    
+    // Null when the original couldn't be decoded
+    private String thumbnailPath;
+    
+    private String detailPath;
+    
+    private long sizeBytes;
+    
+    // Beers whose image this is; maintained with atomic updates, see ImageBlobRepository
+    private int refCount;
+    
+    @Column(nullable = false)
+    private Instant createdAt;
+    
+    // Set when refCount drops to zero; the collector removes the blob once this is old enough
+    private Instant unreferencedSince;
+    
+    // Getters and Setters
+    
+    public String getHash() {
+        return hash;
+    }
+    
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+    
+    public String getOriginalPath() {
+        return originalPath;
+    }
+    
+    public void setOriginalPath(String originalPath) {
+        this.originalPath = originalPath;
+    }
+    
+    public String getThumbnailPath() {
+        return thumbnailPath;
+    }
+    
+    public void setThumbnailPath(String thumbnailPath) {
+        this.thumbnailPath = thumbnailPath;
+    }
+    
+    public String getDetailPath() {
+        return detailPath;
+    }
+    
+    public void setDetailPath(String detailPath) {
+        this.detailPath = detailPath;
+    }
+    
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+    
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+    
+    public int getRefCount() {
+        return refCount;
+    }
+    
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+    
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public Instant getUnreferencedSince() {
+        return unreferencedSince;
+    }
+    
+    public void setUnreferencedSince(Instant unreferencedSince) {
+        this.unreferencedSince = unreferencedSince;
+    }
+}
\ No newline at end of file
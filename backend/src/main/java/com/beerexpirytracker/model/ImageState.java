@@ -0,0 +1,10 @@
+package com.beerexpirytracker.model;
+
+// Processing state of a beer's uploaded image
+public enum ImageState {
+    // Original is in staging, thumbnails not generated yet
+    PENDING,
+    READY,
+    // The upload could not be decoded as an image
+    FAILED
+}
\ No newline at end of file
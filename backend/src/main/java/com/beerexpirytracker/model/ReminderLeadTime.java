@@ -0,0 +1,78 @@
+package com.beerexpirytracker.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+// How many days before expiry the first reminder goes out. A row with neither user nor type is the
+// global default; the most specific matching row (user + type, user, type, global) wins.
+@Entity
+@Table(name = "reminder_lead_times",
+       uniqueConstraints = @UniqueConstraint(name = "uk_reminder_lead_times_scope", columnNames = {"user_id", "beer_type"}))
+public class ReminderLeadTime {
+    
+    @Id
+    @UuidV7Id
+    private UUID id;
+    
+    // Null for policies that apply to every user
+    @Column(name = "user_id")
+    private UUID userId;
+    
+    // Lower-cased beer type; null for policies that apply to every type
+    @Column(name = "beer_type")
+    private String beerType;
+    
+    @Column(nullable = false)
+    private int leadDays;
+    
+    private Instant updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = Instant.now();
+    }
+    
+    // Getters and Setters
+    
+    public UUID getId() {
+        return id;
+    }
+    
+    public void setId(UUID id) {
+        this.id = id;
+    }
+    
+    public UUID getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+    
+    public String getBeerType() {
+        return beerType;
+    }
+    
+    public void setBeerType(String beerType) {
+        this.beerType = beerType;
+    }
+    
+    public int getLeadDays() {
+        return leadDays;
+    }
+    
+    public void setLeadDays(int leadDays) {
+        this.leadDays = leadDays;
+    }
+    
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
\ No newline at end of file
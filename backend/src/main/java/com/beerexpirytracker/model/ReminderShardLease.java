@@ -0,0 +1,90 @@
+package com.beerexpirytracker.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "reminder_shard_leases",
+       uniqueConstraints = {
+           @UniqueConstraint(name = "uk_reminder_shard_leases_slot", columnNames = {"run_slot", "shard"})
+       })
+public class ReminderShardLease {
+    
+    @Id
+    private UUID id;
+    
+    // Start of the release tick this lease belongs to
+    @Column(name = "run_slot", nullable = false)
+    private Instant runSlot;
+    
+    @Column(nullable = false)
+    private int shard;
+    
+    // Node currently holding the lease, null until the shard is first claimed
+    private String owner;
+    
+    private Instant leaseUntil;
+    
+    private boolean completed = false;
+    
+    private Instant completedAt;
+    
+    // Getters and Setters
+    
+    public UUID getId() {
+        return id;
+    }
+    
+    public void setId(UUID id) {
+        this.id = id;
+    }
+    
+    public Instant getRunSlot() {
+        return runSlot;
+    }
+    
+    public void setRunSlot(Instant runSlot) {
+        this.runSlot = runSlot;
+    }
+    
+    public int getShard() {
+        return shard;
+    }
+    
+    public void setShard(int shard) {
+        this.shard = shard;
+    }
+    
+    public String getOwner() {
+        return owner;
+    }
+    
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+    
+    public Instant getLeaseUntil() {
+        return leaseUntil;
+    }
+    
+    public void setLeaseUntil(Instant leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+    
+    public boolean isCompleted() {
+        return completed;
+    }
+    
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+    
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+    
+    public void setCompletedAt(Instant completedAt) {
+        this.completedAt = completedAt;
+    }
+}
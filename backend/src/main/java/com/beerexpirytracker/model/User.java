@@ -4,20 +4,28 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.springframework.data.domain.Persistable;
+import java.time.LocalTime;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
 
+// Looked up on nearly every request; cached per node in the "users" region (see ehcache.xml). The
+// collections aren't cached, so a cached user never carries stale beers or devices. The id is assigned
+// before saving, since it decides which database shard the user lives on.
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
 @Table(name = "users", 
        uniqueConstraints = {
-           @UniqueConstraint(columnNames = "username"),
-           @UniqueConstraint(columnNames = "email")
+           @UniqueConstraint(name = "uk_users_username", columnNames = "username"),
+           @UniqueConstraint(name = "uk_users_email", columnNames = "email")
        })
-public class User {
+public class User implements Persistable<UUID> {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
     
     @NotBlank(message = "Username is required")
@@ -32,13 +40,45 @@ public class User {
     @Size(min = 6, message = "Password must be at least 6 characters")
     private String password;
     
-    private String deviceToken;
+    // IANA zone id; null falls back to reminder.default-time-zone
+    private String timeZone;
+    
+    private LocalTime reminderWindowStart;
+    
+    private LocalTime reminderWindowEnd;
+    
+    // BCP 47 language tag for notification texts; null falls back to notification.default-locale
+    private String locale;
+    
+    // Granted ROLE_ADMIN; only set directly in the database
+    @Column(columnDefinition = "boolean not null default false")
+    private boolean admin = false;
     
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Beer> beers = new HashSet<>();
     
+    // Push tokens, one per device the user has logged in from
+    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
+    private Set<UserDevice> devices = new HashSet<>();
+    
+    // Lets save() insert new users directly instead of merging, as for beers
+    @Transient
+    private boolean newEntity = true;
+    
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        newEntity = false;
+    }
+    
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+    
     // Getters and Setters
     
+    @Override
     public UUID getId() {
         return id;
     }
@@ -71,12 +111,44 @@ public class User {
         this.password = password;
     }
     
-    public String getDeviceToken() {
-        return deviceToken;
+    public String getTimeZone() {
+        return timeZone;
+    }
+    
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+    
+    public LocalTime getReminderWindowStart() {
+        return reminderWindowStart;
     }
     
-    public void setDeviceToken(String deviceToken) {
-        this.deviceToken = deviceToken;
+    public void setReminderWindowStart(LocalTime reminderWindowStart) {
+        this.reminderWindowStart = reminderWindowStart;
+    }
+    
+    public LocalTime getReminderWindowEnd() {
+        return reminderWindowEnd;
+    }
+    
+    public void setReminderWindowEnd(LocalTime reminderWindowEnd) {
+        this.reminderWindowEnd = reminderWindowEnd;
+    }
+    
+    public String getLocale() {
+        return locale;
+    }
+    
+    public void setLocale(String locale) {
+        this.locale = locale;
+    }
+    
+    public boolean isAdmin() {
+        return admin;
+    }
+    
+    public void setAdmin(boolean admin) {
+        this.admin = admin;
     }
     
     public Set<Beer> getBeers() {
@@ -87,6 +159,14 @@ public class User {
         this.beers = beers;
     }
     
+    public Set<UserDevice> getDevices() {
+        return devices;
+    }
+    
+    public void setDevices(Set<UserDevice> devices) {
+        this.devices = devices;
+    }
+    
     public void addBeer(Beer beer) {
         beers.add(beer);
         beer.setUser(this);
@@ -96,4 +176,4 @@ public class User {
         beers.remove(beer);
         beer.setUser(null);
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.beerexpirytracker.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+// A push token registered by one of a user's devices
+@Entity
+@Table(name = "user_devices",
+       uniqueConstraints = @UniqueConstraint(name = "uk_user_devices_token", columnNames = "token"),
+       indexes = @Index(name = "idx_user_devices_user_id", columnList = "user_id"))
+public class UserDevice {
+    
+    // Assigned by the application, since devices are written with a native upsert
+    @Id
+    private UUID id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+    
+    @Column(nullable = false, length = 4096)
+    private String token;
+    
+    @Column(nullable = false)
+    private Instant createdAt;
+    
+    // Refreshed at most daily by logins, see UserDeviceRepository.upsert
+    @Column(nullable = false)
+    private Instant lastSeenAt;
+    
+    // Getters and Setters
+    
+    public UUID getId() {
+        return id;
+    }
+    
+    public void setId(UUID id) {
+        this.id = id;
+    }
+    
+    public User getUser() {
+        return user;
+    }
+    
+    public void setUser(User user) {
+        this.user = user;
+    }
+    
+    public String getToken() {
+        return token;
+    }
+    
+    public void setToken(String token) {
+        this.token = token;
+    }
+    
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public Instant getLastSeenAt() {
+        return lastSeenAt;
+    }
+    
+    public void setLastSeenAt(Instant lastSeenAt) {
+        this.lastSeenAt = lastSeenAt;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.beerexpirytracker.model;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+import java.util.EnumSet;
+
+public class UuidV7Generator implements BeforeExecutionGenerator {
+    
+    private static final long serialVersionUID = 1L;
+    
+    public UuidV7Generator(UuidV7Id config, Member member, CustomIdGeneratorCreationContext context) {
+    }
+    
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        return UuidV7.generate();
+    }
+    
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EnumSet.of(EventType.INSERT);
+    }
+}
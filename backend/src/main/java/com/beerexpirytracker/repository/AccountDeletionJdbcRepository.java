@@ -0,0 +1,62 @@
+package com.beerexpirytracker.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+// Set-based removal of everything an account owns. Nothing is loaded, so the cost doesn't depend on
+// Hibernate walking the user's collections; callers must evict the user from the second-level cache.
+@Repository
+public class AccountDeletionJdbcRepository {
+    
+    // The user's beers, hot and archived, with the image columns the cleanup needs
+    private static final String OWNED_IMAGES =
+            "SELECT image_url, thumbnail_url, detail_image_url, image_state, image_hash FROM beers WHERE user_id = ? "
+            + "AND image_url IS NOT NULL UNION ALL "
+            + "SELECT image_url, thumbnail_url, detail_image_url, image_state, image_hash FROM beers_archive "
+            + "WHERE user_id = ? AND image_url IS NOT NULL";
+    
+    // One decrement per blob, by the number of the user's beers using it
+    private static final String RELEASE_BLOBS_SQL =
+            "UPDATE image_blobs b SET ref_count = GREATEST(b.ref_count - r.uses, 0), "
+            + "unreferenced_since = CASE WHEN b.ref_count <= r.uses THEN now() ELSE b.unreferenced_since END "
+            + "FROM (SELECT image_hash, count(*) AS uses FROM (" + OWNED_IMAGES + ") o "
+            + "WHERE o.image_state <> 'PENDING' AND o.image_url LIKE ? GROUP BY image_hash) r "
+            + "WHERE b.hash = r.image_hash";
+    
+    // Files not in the blob store (staged uploads and pre-blob images) belong to the beer alone
+    private static final String QUEUE_FILES_SQL =
+            "INSERT INTO image_file_deletions (path, created_at) "
+            + "SELECT p.path, now() FROM (" + OWNED_IMAGES + ") o "
+            + "CROSS JOIN LATERAL unnest(ARRAY[o.image_url, o.thumbnail_url, o.detail_image_url]) AS p(path) "
+            + "WHERE (o.image_state = 'PENDING' OR o.image_url NOT LIKE ?) AND p.path IS NOT NULL";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    public int releaseImageBlobs(UUID userId, String blobPathPrefix) {
+        return jdbcTemplate.update(RELEASE_BLOBS_SQL, userId, userId, likePrefix(blobPathPrefix));
+    }
+    
+    public int queueImageFiles(UUID userId, String blobPathPrefix) {
+        return jdbcTemplate.update(QUEUE_FILES_SQL, userId, userId, likePrefix(blobPathPrefix));
+    }
+    
+    // Returns the number of beers removed, hot and archived
+    public int deleteBeers(UUID userId) {
+        return jdbcTemplate.update("DELETE FROM beers WHERE user_id = ?", userId)
+                + jdbcTemplate.update("DELETE FROM beers_archive WHERE user_id = ?", userId);
+    }
+    
+    public int deleteUser(UUID userId) {
+        jdbcTemplate.update("DELETE FROM user_devices WHERE user_id = ?", userId);
+        jdbcTemplate.update("DELETE FROM reminder_lead_times WHERE user_id = ?", userId);
+        return jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+    }
+    
+    private String likePrefix(String prefix) {
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
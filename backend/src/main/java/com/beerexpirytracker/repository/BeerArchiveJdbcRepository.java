@@ -0,0 +1,77 @@
+package com.beerexpirytracker.repository;
+
+import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.model.ImageState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+// Moves expired beers into beers_archive and reads them back. Archived beers are returned as detached
+// Beer objects: they are never written through JPA.
+@Repository
+public class BeerArchiveJdbcRepository {
+    
+    private static final String COLUMNS = "id, brand_name, product_name, type, expiry_date, reminder_date, image_url, "
+            + "thumbnail_url, detail_image_url, image_state, image_hash, reminder_sent, reminder_count, "
+            + "last_reminder_date, reminder_failure_count, updated_at, user_id";
+    
+    // One chunk: the oldest expired beers are deleted and re-inserted into the archive in a single statement.
+    // SKIP LOCKED lets several nodes run the archiver at once without waiting on each other or on users
+    // editing a beer.
+    private static final String ARCHIVE_SQL =
+            "WITH moved AS (DELETE FROM beers WHERE id IN ("
+            + "SELECT id FROM beers WHERE expiry_date < ? ORDER BY expiry_date LIMIT ? FOR UPDATE SKIP LOCKED) "
+            + "RETURNING " + COLUMNS + ") "
+            + "INSERT INTO beers_archive (" + COLUMNS + ", archived_at) SELECT " + COLUMNS + ", now() FROM moved";
+    
+    private static final String SELECT_SQL =
+            "SELECT id, brand_name, product_name, type, expiry_date, reminder_date, image_url, thumbnail_url, "
+            + "detail_image_url, image_state, image_hash FROM beers_archive WHERE user_id = ?";
+    
+    private static final RowMapper<Beer> BEER_MAPPER = (rs, rowNum) -> {
+        Beer beer = new Beer();
+        beer.setId(rs.getObject("id", UUID.class));
+        beer.setBrandName(rs.getString("brand_name"));
+        beer.setProductName(rs.getString("product_name"));
+        beer.setType(rs.getString("type"));
+        beer.setExpiryDate(rs.getObject("expiry_date", LocalDate.class));
+        beer.setReminderDate(rs.getObject("reminder_date", LocalDate.class));
+        beer.setImageUrl(rs.getString("image_url"));
+        beer.setThumbnailUrl(rs.getString("thumbnail_url"));
+        beer.setDetailImageUrl(rs.getString("detail_image_url"));
+        String imageState = rs.getString("image_state");
+        beer.setImageState(imageState != null ? ImageState.valueOf(imageState) : null);
+        beer.setImageHash(rs.getString("image_hash"));
+        return beer;
+    };
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    // Returns the number of beers moved; fewer than limit means nothing older is left
+    public int archiveExpiredBefore(LocalDate expiredBefore, int limit) {
+        return jdbcTemplate.update(ARCHIVE_SQL, Date.valueOf(expiredBefore), limit);
+    }
+    
+    // Copies every row of a detached beers partition into the archive
+    public int archiveTable(String table) {
+        return jdbcTemplate.update("INSERT INTO beers_archive (" + COLUMNS + ", archived_at) SELECT " + COLUMNS
+                + ", now() FROM " + table);
+    }
+    
+    public List<Beer> findByUserId(UUID userId) {
+        return jdbcTemplate.query(SELECT_SQL + " ORDER BY expiry_date DESC", BEER_MAPPER, userId);
+    }
+    
+    public List<Beer> search(UUID userId, String query) {
+        String pattern = "%" + query.toLowerCase().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return jdbcTemplate.query(SELECT_SQL + " AND (lower(brand_name) LIKE ? OR lower(product_name) LIKE ?) "
+                + "ORDER BY expiry_date DESC", BEER_MAPPER, userId, pattern, pattern);
+    }
+}
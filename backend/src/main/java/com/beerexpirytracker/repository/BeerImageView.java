@@ -0,0 +1,13 @@
+package com.beerexpirytracker.repository;
+
+// Projection of a beer's image columns for serving its files
+public interface BeerImageView {
+    
+    String getImageUrl();
+    
+    String getThumbnailUrl();
+    
+    String getDetailImageUrl();
+    
+    String getImageHash();
+}
@@ -0,0 +1,78 @@
+package com.beerexpirytracker.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// DDL for the monthly partitions of beers (see V5__partition_beers_by_expiry_month.sql). Partition names
+// are built from dates only, never from input, so they are safe to put into statements.
+@Repository
+public class BeerPartitionJdbcRepository {
+    
+    private static final String PREFIX = "beers_p";
+    
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    
+    // Serializes partition maintenance across nodes for the rest of the transaction
+    private static final long LOCK_KEY = 0x6265657273L;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    public static String partitionName(LocalDate month) {
+        return PREFIX + SUFFIX.format(month);
+    }
+    
+    // First day of the month a partition covers, or null for the default partition
+    public static LocalDate monthOf(String partition) {
+        if (!partition.startsWith(PREFIX)) {
+            return null;
+        }
+        String suffix = partition.substring(PREFIX.length());
+        return LocalDate.of(Integer.parseInt(suffix.substring(0, 4)), Integer.parseInt(suffix.substring(5, 7)), 1);
+    }
+    
+    public List<String> findPartitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE i.inhparent = 'beers'::regclass ORDER BY c.relname", String.class);
+    }
+    
+    // Monthly tables that have been detached but not yet archived and dropped
+    public List<String> findDetachedPartitions() {
+        return jdbcTemplate.queryForList("SELECT relname FROM pg_class WHERE relkind = 'r' AND NOT relispartition "
+                + "AND relname ~ '^beers_p[0-9]{4}_[0-9]{2}$' AND relnamespace = current_schema()::regnamespace "
+                + "ORDER BY relname", String.class);
+    }
+    
+    public void lock() {
+        jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)::text", String.class, LOCK_KEY);
+    }
+    
+    // Rows for the month that went to the default partition are moved over before attaching, since
+    // attaching fails while the default partition still holds any of them
+    public int createPartition(LocalDate month) {
+        String name = partitionName(month);
+        LocalDate next = month.plusMonths(1);
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE beers INCLUDING DEFAULTS)");
+        int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM beers_default WHERE expiry_date >= ? "
+                + "AND expiry_date < ? RETURNING *) INSERT INTO " + name + " SELECT * FROM moved",
+                Date.valueOf(month), Date.valueOf(next));
+        // Takes only a SHARE UPDATE EXCLUSIVE lock on beers, so reads and writes continue meanwhile
+        jdbcTemplate.execute("ALTER TABLE beers ATTACH PARTITION " + name + " FOR VALUES FROM ('" + month
+                + "') TO ('" + next + "')");
+        return moved;
+    }
+    
+    public void detachPartition(String name) {
+        jdbcTemplate.execute("ALTER TABLE beers DETACH PARTITION " + name);
+    }
+    
+    public void dropTable(String name) {
+        jdbcTemplate.execute("DROP TABLE " + name);
+    }
+}
@@ -0,0 +1,204 @@
+package com.beerexpirytracker.repository;
+
+import com.beerexpirytracker.config.ShardRoutingDataSource;
+import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.model.ImageState;
+import com.beerexpirytracker.service.UserShardRouter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// Non-blocking reads of a user's beers over R2DBC, for the streaming read API. Every shard gets its own
+// connection pool next to its JDBC one; the shard comes from the user id, as reactive pipelines don't run
+// on the thread the request bound. Beers are returned as detached Beer objects and never written here.
+@Repository
+@ConditionalOnProperty(name = "beers.reactive-read.enabled", havingValue = "true")
+public class BeerR2dbcRepository {
+    
+    private static final String COLUMNS = "id, brand_name, product_name, type, expiry_date, reminder_date, image_url, "
+            + "thumbnail_url, detail_image_url, image_state, image_hash";
+    
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${spring.datasource.url}")
+    private String url;
+    
+    @Value("${spring.datasource.username}")
+    private String username;
+    
+    @Value("${spring.datasource.password}")
+    private String password;
+    
+    @Value("${datasource.shards.urls:}")
+    private String[] shardUrls;
+    
+    @Value("${datasource.shards.username:${spring.datasource.username}}")
+    private String shardUsername;
+    
+    @Value("${datasource.shards.password:${spring.datasource.password}}")
+    private String shardPassword;
+    
+    @Value("${beers.reactive-read.pool-size:20}")
+    private int poolSize;
+    
+    private final Map<String, ConnectionPool> pools = new HashMap<>();
+    private final Map<String, DatabaseClient> clients = new HashMap<>();
+    
+    @PostConstruct
+    void init() {
+        addShard(ShardRoutingDataSource.DEFAULT_SHARD, url, username, password);
+        for (int i = 0; i < shardUrls.length; i++) {
+            if (!shardUrls[i].isBlank()) {
+                addShard(ShardRoutingDataSource.shardName(i + 1), shardUrls[i].trim(), shardUsername, shardPassword);
+            }
+        }
+    }
+    
+    @PreDestroy
+    void close() {
+        pools.values().forEach(ConnectionPool::dispose);
+    }
+    
+    public Flux<Beer> findByUserId(UUID userId) {
+        return client(userId).sql("SELECT " + COLUMNS + " FROM beers WHERE user_id = :userId")
+                .bind("userId", userId)
+                .map(BeerR2dbcRepository::toBeer)
+                .all();
+    }
+    
+    public Flux<Beer> findArchivedByUserId(UUID userId) {
+        return client(userId).sql("SELECT " + COLUMNS + " FROM beers_archive WHERE user_id = :userId "
+                        + "ORDER BY expiry_date DESC")
+                .bind("userId", userId)
+                .map(BeerR2dbcRepository::toBeer)
+                .all();
+    }
+    
+    public Flux<Beer> findByUserIdAndExpiryDateBetween(UUID userId, LocalDate startDate, LocalDate endDate) {
+        return client(userId).sql("SELECT " + COLUMNS + " FROM beers WHERE user_id = :userId "
+                        + "AND expiry_date BETWEEN :startDate AND :endDate ORDER BY expiry_date")
+                .bind("userId", userId)
+                .bind("startDate", startDate)
+                .bind("endDate", endDate)
+                .map(BeerR2dbcRepository::toBeer)
+                .all();
+    }
+    
+    // The stats only need counts, so these group in the database instead of streaming every beer
+    public Mono<Map<LocalDate, Long>> countByExpiryDate(UUID userId) {
+        return client(userId).sql("SELECT expiry_date, count(*) AS beers FROM beers WHERE user_id = :userId "
+                        + "GROUP BY expiry_date")
+                .bind("userId", userId)
+                .map(row -> Map.entry(row.get("expiry_date", LocalDate.class), row.get("beers", Long.class)))
+                .all()
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+    
+    // Beers without a type are counted under ""
+    public Mono<Map<String, Long>> countByType(UUID userId) {
+        return client(userId).sql("SELECT COALESCE(type, '') AS type, count(*) AS beers FROM beers "
+                        + "WHERE user_id = :userId GROUP BY 1")
+                .bind("userId", userId)
+                .map(row -> Map.entry(row.get("type", String.class), row.get("beers", Long.class)))
+                .all()
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+    
+    // The brands with the most beers, most first
+    public Mono<Map<String, Long>> countTopBrands(UUID userId, int limit) {
+        return client(userId).sql("SELECT brand_name, count(*) AS beers FROM beers WHERE user_id = :userId "
+                        + "GROUP BY brand_name ORDER BY beers DESC LIMIT :limit")
+                .bind("userId", userId)
+                .bind("limit", limit)
+                .map(row -> Map.entry(row.get("brand_name", String.class), row.get("beers", Long.class)))
+                .all()
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue, LinkedHashMap::new);
+    }
+    
+    private DatabaseClient client(UUID userId) {
+        return clients.get(userShardRouter.shardOf(userId));
+    }
+    
+    // The pools read the same databases as the JDBC ones, with the JDBC URL turned into an R2DBC one
+    private void addShard(String shard, String jdbcUrl, String user, String pass) {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(r2dbcUrl(jdbcUrl))
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, user)
+                .option(ConnectionFactoryOptions.PASSWORD, pass)
+                .build();
+        ConnectionPool pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .name("r2dbc-" + shard)
+                .initialSize(1)
+                .maxSize(poolSize)
+                .build());
+        pools.put(shard, pool);
+        clients.put(shard, DatabaseClient.create(pool));
+        
+        pool.getMetrics().ifPresent(metrics -> {
+            Gauge.builder("r2dbc.pool.acquired", metrics, m -> m.acquiredSize())
+                    .tag("pool", shard)
+                    .description("Connections of the reactive read pool currently in use")
+                    .register(meterRegistry);
+            Gauge.builder("r2dbc.pool.pending", metrics, m -> m.pendingAcquireSize())
+                    .tag("pool", shard)
+                    .description("Reads waiting for a connection of the reactive read pool")
+                    .register(meterRegistry);
+        });
+    }
+    
+    // R2DBC refuses user and password in the query string, where JDBC URLs may carry them; they are set as
+    // options instead
+    private static String r2dbcUrl(String jdbcUrl) {
+        String url = jdbcUrl.replaceFirst("^jdbc:", "r2dbc:");
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return url;
+        }
+        String parameters = Arrays.stream(url.substring(query + 1).split("&"))
+                .filter(parameter -> !parameter.startsWith("user=") && !parameter.startsWith("password="))
+                .collect(Collectors.joining("&"));
+        return parameters.isEmpty() ? url.substring(0, query) : url.substring(0, query + 1) + parameters;
+    }
+    
+    private static Beer toBeer(Readable row) {
+        Beer beer = new Beer();
+        beer.setId(row.get("id", UUID.class));
+        beer.setBrandName(row.get("brand_name", String.class));
+        beer.setProductName(row.get("product_name", String.class));
+        beer.setType(row.get("type", String.class));
+        beer.setExpiryDate(row.get("expiry_date", LocalDate.class));
+        beer.setReminderDate(row.get("reminder_date", LocalDate.class));
+        beer.setImageUrl(row.get("image_url", String.class));
+        beer.setThumbnailUrl(row.get("thumbnail_url", String.class));
+        beer.setDetailImageUrl(row.get("detail_image_url", String.class));
+        String imageState = row.get("image_state", String.class);
+        beer.setImageState(imageState != null ? ImageState.valueOf(imageState) : null);
+        beer.setImageHash(row.get("image_hash", String.class));
+        return beer;
+    }
+}
@@ -0,0 +1,239 @@
+package com.beerexpirytracker.repository;
+
+import com.beerexpirytracker.dto.ReminderBulkUpdateRequest;
+import com.beerexpirytracker.model.BeerKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+// Set-based reminder bookkeeping. These statements bypass the persistence context,
+// so Beer entities loaded earlier in the transaction keep their old counters.
+//
+// Beers are addressed by id and expiry date (see BeerKey): id = ANY(ids) AND expiry_date = ANY(dates) prunes
+// the partitions at plan time and hits each remaining primary key index on both columns. Matching the two
+// arrays independently is exact because ids are unique across the table: they only come from UuidV7, and
+// moving rows (between partitions, shards or into the archive) copies them rather than generating new ones.
+@Repository
+public class BeerReminderJdbcRepository {
+    
+    // last_reminder_date is the owner's local date, matching how due reminders are selected
+    private static final String MARK_REMINDED_SQL =
+            "UPDATE beers b SET reminder_sent = true, reminder_count = b.reminder_count + 1, "
+            + "last_reminder_date = CAST(now() AT TIME ZONE COALESCE(u.time_zone, ?) AS date), updated_at = now() "
+            + "FROM users u WHERE u.id = b.user_id AND b.id = ANY(?) AND b.expiry_date = ANY(?)";
+    
+    private static final String RECORD_FAILURE_SQL =
+            "UPDATE beers SET reminder_failure_count = reminder_failure_count + 1 "
+            + "WHERE id = ANY(?) AND expiry_date = ANY(?)";
+    
+    // The owner's local date, so a snooze counts from their today rather than the server's
+    private static final String OWNER_TODAY =
+            "CAST(now() AT TIME ZONE COALESCE(u.time_zone, ?) AS date)";
+    
+    // Claims are left alone until they time out, so a node that died mid-send doesn't hold its beers forever.
+    // Doesn't touch updated_at: a claim is not a change the reminder wheels need to resync.
+    private static final String CLAIM_SQL =
+            "UPDATE beers SET reminder_claimed_at = now() WHERE id = ANY(?) AND expiry_date = ANY(?) "
+            + "AND (reminder_claimed_at IS NULL OR reminder_claimed_at < now() - ? * interval '1 millisecond') "
+            + "RETURNING id, expiry_date";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${reminder.update-chunk-size:1000}")
+    private int chunkSize;
+    
+    public int markReminded(List<BeerKey> beers, String defaultTimeZone) {
+        int updated = 0;
+        for (int from = 0; from < beers.size(); from += chunkSize) {
+            List<BeerKey> chunk = beers.subList(from, Math.min(from + chunkSize, beers.size()));
+            updated += jdbcTemplate.update(MARK_REMINDED_SQL, ps -> {
+                ps.setString(1, defaultTimeZone);
+                setKeys(ps, 2, chunk);
+            });
+        }
+        return updated;
+    }
+    
+    // Claims the beers for sending their reminders; returns the beers claimed, leaving out beers another node
+    // has claimed. Waits for concurrent claims and sends being recorded, so rows read afterwards in the
+    // same transaction are current.
+    public List<BeerKey> claim(List<BeerKey> beers, long timeoutMs) {
+        return jdbcTemplate.query(CLAIM_SQL, ps -> {
+            setKeys(ps, 1, beers);
+            ps.setLong(3, timeoutMs);
+        }, (rs, rowNum) -> toKey(rs));
+    }
+    
+    // Which of the beers are currently claimed
+    public List<BeerKey> findClaimed(List<BeerKey> beers) {
+        return jdbcTemplate.query("SELECT id, expiry_date FROM beers WHERE id = ANY(?) AND expiry_date = ANY(?) "
+                + "AND reminder_claimed_at IS NOT NULL", ps -> setKeys(ps, 1, beers), (rs, rowNum) -> toKey(rs));
+    }
+    
+    public int releaseClaims(List<BeerKey> beers) {
+        if (beers.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update("UPDATE beers SET reminder_claimed_at = NULL "
+                + "WHERE id = ANY(?) AND expiry_date = ANY(?)", ps -> setKeys(ps, 1, beers));
+    }
+    
+    public int recordFailures(List<BeerKey> beers) {
+        int updated = 0;
+        for (int from = 0; from < beers.size(); from += chunkSize) {
+            List<BeerKey> chunk = beers.subList(from, Math.min(from + chunkSize, beers.size()));
+            updated += jdbcTemplate.update(RECORD_FAILURE_SQL, ps -> setKeys(ps, 1, chunk));
+        }
+        return updated;
+    }
+    
+    // Snoozes (days > 0) or dismisses (days == null) the reminders of the user's beers matching the
+    // selection, as one UPDATE that never loads the rows; returns the number of beers changed
+    public int bulkUpdateReminders(UUID userId, ReminderBulkUpdateRequest selection, Integer days,
+                                   String defaultTimeZone) {
+        StringBuilder sql = new StringBuilder("UPDATE beers b SET ");
+        List<Object> params = new ArrayList<>();
+        if (days != null) {
+            // Reminders resume N days after today (or after the pending reminder date if that is later). The
+            // snooze is kept separately so recomputing reminder dates from lead times doesn't undo it.
+            String snoozedUntil = "GREATEST(b.reminder_date, " + OWNER_TODAY + ") + ?";
+            sql.append("reminder_date = ").append(snoozedUntil).append(", ")
+                    .append("reminder_snoozed_until = ").append(snoozedUntil).append(", ")
+                    .append("reminder_sent = false, ");
+            params.add(defaultTimeZone);
+            params.add(days);
+            params.add(defaultTimeZone);
+            params.add(days);
+        } else {
+            // Five is the reminder cap, so no further reminders go out for dismissed beers
+            sql.append("reminder_sent = true, reminder_count = 5, ");
+        }
+        // Picked up by every node's reminder wheel sync
+        sql.append("updated_at = now() FROM users u WHERE u.id = b.user_id AND b.user_id = ?");
+        params.add(userId);
+        
+        if (selection.getIds() != null && !selection.getIds().isEmpty()) {
+            sql.append(" AND b.id = ANY(?)");
+            params.add(selection.getIds());
+        }
+        if (selection.getBrandName() != null) {
+            sql.append(" AND lower(b.brand_name) = lower(?)");
+            params.add(selection.getBrandName());
+        }
+        if (selection.getProductName() != null) {
+            sql.append(" AND lower(b.product_name) = lower(?)");
+            params.add(selection.getProductName());
+        }
+        if (selection.getType() != null) {
+            sql.append(" AND lower(b.type) = lower(?)");
+            params.add(selection.getType());
+        }
+        if (selection.getExpiryFrom() != null) {
+            sql.append(" AND b.expiry_date >= ?");
+            params.add(selection.getExpiryFrom());
+        }
+        if (selection.getExpiryTo() != null) {
+            sql.append(" AND b.expiry_date <= ?");
+            params.add(selection.getExpiryTo());
+        }
+        
+        return jdbcTemplate.update(sql.toString(), ps -> {
+            for (int i = 0; i < params.size(); i++) {
+                Object param = params.get(i);
+                if (param instanceof List) {
+                    ps.setArray(i + 1, toUuidArray(ps.getConnection(), selection.getIds()));
+                } else {
+                    ps.setObject(i + 1, param);
+                }
+            }
+        });
+    }
+    
+    // Lead days of the most specific policy for each beer: user + type, user, type, then the global row.
+    // Types are trimmed and lower-cased the way ReminderPolicyService normalizes them.
+    private static final String LEAD_DAYS =
+            "COALESCE("
+            + "(SELECT p.lead_days FROM reminder_lead_times p WHERE p.user_id = b.user_id AND p.beer_type = lower(btrim(b.type))), "
+            + "(SELECT p.lead_days FROM reminder_lead_times p WHERE p.user_id = b.user_id AND p.beer_type IS NULL), "
+            + "(SELECT p.lead_days FROM reminder_lead_times p WHERE p.user_id IS NULL AND p.beer_type = lower(btrim(b.type))), "
+            + "(SELECT p.lead_days FROM reminder_lead_times p WHERE p.user_id IS NULL AND p.beer_type IS NULL), "
+            + "?)";
+    
+    // Upper id of the next chunk of unexpired beers in scope after afterId, or null when none are left
+    public UUID nextRecomputeChunkEnd(UUID userId, String beerType, UUID afterId, int size) {
+        List<Object> params = new ArrayList<>();
+        // PostgreSQL has no max(uuid), so the last id of the chunk is taken by sorting instead
+        String sql = "SELECT c.id FROM (SELECT b.id FROM beers b WHERE " + recomputeScope(userId, beerType, params)
+                + " AND b.id > ? ORDER BY b.id LIMIT ?) c ORDER BY c.id DESC LIMIT 1";
+        params.add(afterId);
+        params.add(size);
+        return jdbcTemplate.queryForList(sql, UUID.class, params.toArray()).stream().findFirst().orElse(null);
+    }
+    
+    // Recomputes reminder_date for the beers in scope with afterId < id <= upToId, keeping snoozed reminders
+    // at least as late as the snooze; rows whose date doesn't change are not written. Returns the number of
+    // beers changed.
+    public int recomputeReminderDates(UUID userId, String beerType, UUID afterId, UUID upToId, int defaultLeadDays) {
+        List<Object> params = new ArrayList<>();
+        params.add(defaultLeadDays);
+        // Joined on the whole primary key, and t limited to the same unexpired partitions as b
+        String sql = "UPDATE beers t SET reminder_date = n.reminder_date, updated_at = now() "
+                + "FROM (SELECT b.id, b.expiry_date, GREATEST(b.expiry_date - " + LEAD_DAYS + ", "
+                + "b.reminder_snoozed_until) AS reminder_date FROM beers b WHERE "
+                + recomputeScope(userId, beerType, params) + " AND b.id > ? AND b.id <= ?) n "
+                + "WHERE t.id = n.id AND t.expiry_date = n.expiry_date AND t.expiry_date >= CURRENT_DATE "
+                + "AND t.reminder_date IS DISTINCT FROM n.reminder_date";
+        params.add(afterId);
+        params.add(upToId);
+        return jdbcTemplate.update(sql, params.toArray());
+    }
+    
+    private String recomputeScope(UUID userId, String beerType, List<Object> params) {
+        // Dismissed beers (at the five-reminder cap) never get another reminder, so their dates stay
+        StringBuilder scope = new StringBuilder("b.expiry_date >= CURRENT_DATE AND b.reminder_count < 5");
+        if (userId != null) {
+            scope.append(" AND b.user_id = ?");
+            params.add(userId);
+        }
+        if (beerType != null) {
+            scope.append(" AND lower(btrim(b.type)) = ?");
+            params.add(beerType);
+        }
+        return scope.toString();
+    }
+    
+    private Array toUuidArray(Connection connection, List<UUID> ids) throws SQLException {
+        return connection.createArrayOf("uuid", ids.toArray());
+    }
+    
+    // Binds the ids and the distinct expiry dates of the beers as two array parameters
+    private void setKeys(PreparedStatement ps, int index, List<BeerKey> beers) throws SQLException {
+        List<UUID> ids = new ArrayList<>(beers.size());
+        Set<Date> expiryDates = new LinkedHashSet<>();
+        for (BeerKey beer : beers) {
+            ids.add(beer.getId());
+            expiryDates.add(Date.valueOf(beer.getExpiryDate()));
+        }
+        ps.setArray(index, toUuidArray(ps.getConnection(), ids));
+        ps.setArray(index + 1, ps.getConnection().createArrayOf("date", expiryDates.toArray()));
+    }
+    
+    private BeerKey toKey(ResultSet rs) throws SQLException {
+        return new BeerKey(rs.getObject("id", UUID.class), rs.getObject("expiry_date", LocalDate.class));
+    }
+}
@@ -1,12 +1,18 @@
 package com.beerexpirytracker.repository;
 
 import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.model.ImageState;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -14,10 +20,52 @@ public interface BeerRepository extends JpaRepository<Beer, UUID> {
     
     List<Beer> findByUserId(UUID userId);
     
-    @Query("SELECT b FROM Beer b WHERE b.reminderDate <= ?1 AND b.reminderCount < 5 AND b.expiryDate > CURRENT_DATE")
-    List<Beer> findBeersNeedingReminders(LocalDate today);
+    // Reminder wheel loading: a bounded reminder_date range, keyset-paginated by id
+    @Query("SELECT b FROM Beer b JOIN FETCH b.user WHERE b.reminderDate BETWEEN ?1 AND ?2 "
+            + "AND b.reminderCount < 5 AND b.expiryDate > ?3 AND b.id > ?4 ORDER BY b.id")
+    List<Beer> findReminderCandidates(LocalDate from, LocalDate to, LocalDate today, UUID afterId, Pageable pageable);
+    
+    // Reminders that are due but haven't gone out today; the lower bound keeps it on the reminder_date index
+    @Query("SELECT COUNT(b) FROM Beer b WHERE b.reminderDate BETWEEN ?1 AND ?2 AND b.reminderCount < 5 "
+            + "AND b.expiryDate > ?2 AND (b.lastReminderDate IS NULL OR b.lastReminderDate < ?2)")
+    long countDueUnsent(LocalDate from, LocalDate today);
+    
+    @Query("SELECT b FROM Beer b JOIN FETCH b.user WHERE b.updatedAt > ?1")
+    List<Beer> findChangedSince(Instant since);
+    
+    // The expiry dates confine the lookup to the beers' partitions, see BeerKey
+    @Query("SELECT b FROM Beer b JOIN FETCH b.user WHERE b.id IN ?1 AND b.expiryDate IN ?2")
+    List<Beer> findAllWithUserByIdInAndExpiryDateIn(Collection<UUID> ids, Collection<LocalDate> expiryDates);
+    
+    @Modifying
+    @Query("UPDATE Beer b SET b.updatedAt = ?2 WHERE b.user.id = ?1")
+    int touchByUserId(UUID userId, Instant updatedAt);
+    
+    // Publishes processed images, unless the beer got a newer upload (or was deleted) in the meantime
+    @Modifying
+    @Query("UPDATE Beer b SET b.imageUrl = ?3, b.thumbnailUrl = ?4, b.detailImageUrl = ?5, b.imageState = ?6, "
+            + "b.imageHash = ?7 WHERE b.id = ?1 AND b.imageUrl = ?2")
+    int completeImage(UUID id, String stagedPath, String imageUrl, String thumbnailUrl, String detailImageUrl,
+                      ImageState imageState, String imageHash);
+    
+    // Ownership check and file lookup for image requests: a primary-key probe that loads no entity
+    @Query("SELECT b.imageUrl AS imageUrl, b.thumbnailUrl AS thumbnailUrl, b.detailImageUrl AS detailImageUrl, "
+            + "b.imageHash AS imageHash FROM Beer b WHERE b.id = ?1 AND b.user.id = ?2")
+    Optional<BeerImageView> findImageByIdAndUserId(UUID id, UUID userId);
+    
+    // Same lookup for beers that have been moved to beers_archive
+    @Query(value = "SELECT image_url AS imageUrl, thumbnail_url AS thumbnailUrl, detail_image_url AS detailImageUrl, "
+            + "image_hash AS imageHash FROM beers_archive WHERE id = ?1 AND user_id = ?2", nativeQuery = true)
+    Optional<BeerImageView> findArchivedImageByIdAndUserId(UUID id, UUID userId);
+    
+    // (id, staged path, content hash) of uploads still waiting for processing
+    @Query("SELECT b.id, b.imageUrl, b.imageHash FROM Beer b WHERE b.imageState = ?1 AND b.updatedAt < ?2")
+    List<Object[]> findImagesInState(ImageState imageState, Instant updatedBefore, Pageable pageable);
     
     List<Beer> findByUserIdAndExpiryDateBetweenOrderByExpiryDateAsc(UUID userId, LocalDate startDate, LocalDate endDate);
     
-    List<Beer> findByBrandNameContainingIgnoreCaseOrProductNameContainingIgnoreCase(String brandName, String productName);
+    // Scoped to the owner in SQL rather than filtering every user's matches in memory
+    @Query("SELECT b FROM Beer b WHERE b.user.id = ?1 AND (LOWER(b.brandName) LIKE LOWER(CONCAT('%', ?2, '%')) "
+            + "OR LOWER(b.productName) LIKE LOWER(CONCAT('%', ?2, '%')))")
+    List<Beer> searchByUserId(UUID userId, String query);
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.beerexpirytracker.repository;
+
+import com.beerexpirytracker.model.ImageBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface ImageBlobRepository extends JpaRepository<ImageBlob, String> {
+    
+    // Creates the blob unreferenced, or locks the existing row until the transaction ends so the
+    // collector can't remove it while a beer is being pointed at it
+    @Modifying
+    @Query(value = "INSERT INTO image_blobs (hash, original_path, thumbnail_path, detail_path, size_bytes, ref_count, "
+            + "created_at, unreferenced_since) VALUES (?1, ?2, ?3, ?4, ?5, 0, ?6, ?6) "
+            + "ON CONFLICT (hash) DO UPDATE SET created_at = image_blobs.created_at",
+            nativeQuery = true)
+    int register(String hash, String originalPath, String thumbnailPath, String detailPath, long sizeBytes, Instant now);
+    
+    // Returns 0 when no such blob is stored
+    @Modifying
+    @Query(value = "UPDATE image_blobs SET ref_count = ref_count + 1, unreferenced_since = NULL WHERE hash = ?1",
+            nativeQuery = true)
+    int retain(String hash);
+    
+    @Modifying
+    @Query(value = "UPDATE image_blobs SET ref_count = ref_count + ?2, unreferenced_since = NULL WHERE hash = ?1",
+            nativeQuery = true)
+    int retain(String hash, int count);
+    
+    @Modifying
+    @Query(value = "UPDATE image_blobs SET ref_count = ref_count - 1, "
+            + "unreferenced_since = CASE WHEN ref_count = 1 THEN ?2 ELSE unreferenced_since END "
+            + "WHERE hash = ?1 AND ref_count > 0",
+            nativeQuery = true)
+    int release(String hash, Instant now);
+    
+    @Query("SELECT b FROM ImageBlob b WHERE b.refCount = 0 AND b.unreferencedSince < ?1")
+    List<ImageBlob> findUnreferencedSince(Instant before, Pageable pageable);
+    
+    // Re-checks the reference count under the row lock; 0 if the blob was picked up again meanwhile
+    @Modifying
+    @Query(value = "DELETE FROM image_blobs WHERE hash = ?1 AND ref_count = 0 AND unreferenced_since < ?2",
+            nativeQuery = true)
+    int deleteUnreferenced(String hash, Instant before);
+}
\ No newline at end of file
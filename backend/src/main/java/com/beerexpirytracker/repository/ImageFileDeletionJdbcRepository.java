@@ -0,0 +1,35 @@
+package com.beerexpirytracker.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+
+// Queue of image files to delete from disk, see V6__image_file_deletions.sql
+@Repository
+public class ImageFileDeletionJdbcRepository {
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    public void enqueue(String... paths) {
+        for (String path : paths) {
+            if (path != null) {
+                jdbcTemplate.update("INSERT INTO image_file_deletions (path, created_at) VALUES (?, now())", path);
+            }
+        }
+    }
+    
+    // Claims a batch for the current transaction; other nodes skip the locked rows
+    public List<Map<String, Object>> lockBatch(int limit) {
+        return jdbcTemplate.queryForList("SELECT id, path FROM image_file_deletions ORDER BY id LIMIT ? "
+                + "FOR UPDATE SKIP LOCKED", limit);
+    }
+    
+    public int delete(List<Long> ids) {
+        return jdbcTemplate.update("DELETE FROM image_file_deletions WHERE id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())));
+    }
+}
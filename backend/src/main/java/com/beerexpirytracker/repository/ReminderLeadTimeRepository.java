@@ -0,0 +1,43 @@
+package com.beerexpirytracker.repository;
+
+import com.beerexpirytracker.model.ReminderLeadTime;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ReminderLeadTimeRepository extends JpaRepository<ReminderLeadTime, UUID> {
+    
+    // Every policy that could apply to a beer of this user and type (at most four rows)
+    @Query("SELECT p FROM ReminderLeadTime p WHERE (p.userId = ?1 OR p.userId IS NULL) "
+            + "AND (p.beerType = ?2 OR p.beerType IS NULL)")
+    List<ReminderLeadTime> findApplicable(UUID userId, String beerType);
+    
+    // Same for beers without a type, which only type-independent policies cover
+    @Query("SELECT p FROM ReminderLeadTime p WHERE (p.userId = ?1 OR p.userId IS NULL) AND p.beerType IS NULL")
+    List<ReminderLeadTime> findApplicableUntyped(UUID userId);
+    
+    // One row per scope (uk_reminder_lead_times_scope, nulls not distinct), so concurrent stores of the same
+    // scope update one row instead of both inserting
+    @Modifying
+    @Query(value = "INSERT INTO reminder_lead_times (id, user_id, beer_type, lead_days, updated_at) "
+            + "VALUES (?1, CAST(?2 AS uuid), CAST(?3 AS varchar), ?4, ?5) "
+            + "ON CONFLICT ON CONSTRAINT uk_reminder_lead_times_scope "
+            + "DO UPDATE SET lead_days = EXCLUDED.lead_days, updated_at = EXCLUDED.updated_at",
+            nativeQuery = true)
+    int upsert(UUID id, UUID userId, String beerType, int leadDays, Instant now);
+    
+    @Modifying
+    @Query(value = "DELETE FROM reminder_lead_times WHERE user_id IS NOT DISTINCT FROM CAST(?1 AS uuid) "
+            + "AND beer_type IS NOT DISTINCT FROM CAST(?2 AS varchar)",
+            nativeQuery = true)
+    int deleteByScope(UUID userId, String beerType);
+    
+    @Query("SELECT p FROM ReminderLeadTime p WHERE p.userId IS NULL OR p.userId = ?1 ORDER BY p.userId, p.beerType")
+    List<ReminderLeadTime> findVisibleTo(UUID userId);
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.beerexpirytracker.repository;
+
+import com.beerexpirytracker.model.ReminderShardLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Repository
+public interface ReminderShardLeaseRepository extends JpaRepository<ReminderShardLease, UUID> {
+    
+    @Modifying
+    @Query(value = "INSERT INTO reminder_shard_leases (id, run_slot, shard, completed) VALUES (?1, ?2, ?3, false) "
+            + "ON CONFLICT (run_slot, shard) DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(UUID id, Instant runSlot, int shard);
+    
+    @Modifying
+    @Query("UPDATE ReminderShardLease l SET l.owner = ?3, l.leaseUntil = ?4 "
+            + "WHERE l.runSlot = ?1 AND l.shard = ?2 AND l.completed = false "
+            + "AND (l.owner IS NULL OR l.leaseUntil < ?5)")
+    int claim(Instant runSlot, int shard, String owner, Instant leaseUntil, Instant now);
+    
+    @Modifying
+    @Query("UPDATE ReminderShardLease l SET l.leaseUntil = ?4 "
+            + "WHERE l.runSlot = ?1 AND l.shard = ?2 AND l.owner = ?3 AND l.completed = false")
+    int renew(Instant runSlot, int shard, String owner, Instant leaseUntil);
+    
+    @Modifying
+    @Query("UPDATE ReminderShardLease l SET l.completed = true, l.completedAt = ?4 "
+            + "WHERE l.runSlot = ?1 AND l.shard = ?2 AND l.owner = ?3 AND l.completed = false")
+    int complete(Instant runSlot, int shard, String owner, Instant completedAt);
+    
+    @Modifying
+    @Query("DELETE FROM ReminderShardLease l WHERE l.runSlot < ?1")
+    int deleteByRunSlotBefore(Instant cutoff);
+    
+    @Query("SELECT COUNT(l) FROM ReminderShardLease l WHERE l.runSlot = ?1 AND l.completed = false "
+            + "AND (l.owner IS NULL OR l.leaseUntil < ?2)")
+    long countClaimable(Instant runSlot, Instant now);
+}
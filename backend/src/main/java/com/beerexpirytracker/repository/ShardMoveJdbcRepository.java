@@ -0,0 +1,104 @@
+package com.beerexpirytracker.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+// Row copies between database shards for the rebalancer. Every call goes to the shard the caller has
+// bound; rows are carried over column by column as read, so the schemas on both sides must match.
+@Repository
+public class ShardMoveJdbcRepository {
+    
+    // Tables holding a user's rows, parents first, with the column naming the user
+    private static final List<Map.Entry<String, String>> USER_TABLES = List.of(
+            Map.entry("users", "id"),
+            Map.entry("user_devices", "user_id"),
+            Map.entry("reminder_lead_times", "user_id"),
+            Map.entry("beers", "user_id"),
+            Map.entry("beers_archive", "user_id"));
+    
+    // Keeps rebalance runs from overlapping across nodes. Unlike the partition maintenance lock it is held
+    // by the session, since a run spans many transactions on every shard.
+    private static final long REBALANCE_LOCK_KEY = 0x7368617264L;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    // Runs the action while one connection to the bound shard holds the rebalance lock; fails right away
+    // if another run holds it
+    public <T> T withRebalanceLock(Supplier<T> action) {
+        return jdbcTemplate.execute((ConnectionCallback<T>) connection -> {
+            try (PreparedStatement lock = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+                lock.setLong(1, REBALANCE_LOCK_KEY);
+                try (ResultSet result = lock.executeQuery()) {
+                    if (!result.next() || !result.getBoolean(1)) {
+                        throw new IllegalStateException("Another shard rebalance is running");
+                    }
+                }
+            }
+            try {
+                return action.get();
+            } finally {
+                try (PreparedStatement unlock = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+                    unlock.setLong(1, REBALANCE_LOCK_KEY);
+                    unlock.execute();
+                }
+            }
+        });
+    }
+    
+    public List<UUID> findUserIds(UUID afterId, int limit) {
+        return jdbcTemplate.queryForList("SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?", UUID.class,
+                afterId, limit);
+    }
+    
+    public boolean userExists(UUID userId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM users WHERE id = ?)",
+                Boolean.class, userId));
+    }
+    
+    // All of the user's rows by table, in insertion order
+    public Map<String, List<Map<String, Object>>> findUserRows(UUID userId) {
+        Map<String, List<Map<String, Object>>> rows = new LinkedHashMap<>();
+        for (Map.Entry<String, String> table : USER_TABLES) {
+            rows.put(table.getKey(), jdbcTemplate.queryForList(
+                    "SELECT * FROM " + table.getKey() + " WHERE " + table.getValue() + " = ?", userId));
+        }
+        return rows;
+    }
+    
+    // Rows that already exist are skipped, so an interrupted move can simply be repeated. Returns 1 for
+    // each row inserted and 0 for each row skipped.
+    public int[] insertRows(String table, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return new int[0];
+        }
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                + String.join(", ", columns.stream().map(column -> "?").toList()) + ") ON CONFLICT DO NOTHING";
+        List<Object[]> values = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            values.add(columns.stream().map(row::get).toArray());
+        }
+        return jdbcTemplate.batchUpdate(sql, values);
+    }
+    
+    public List<Map<String, Object>> findGlobalLeadTimes() {
+        return jdbcTemplate.queryForList("SELECT * FROM reminder_lead_times WHERE user_id IS NULL");
+    }
+    
+    public void replaceGlobalLeadTimes(List<Map<String, Object>> policies) {
+        jdbcTemplate.update("DELETE FROM reminder_lead_times WHERE user_id IS NULL");
+        insertRows("reminder_lead_times", policies);
+    }
+}
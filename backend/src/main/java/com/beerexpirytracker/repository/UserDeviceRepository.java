@@ -0,0 +1,41 @@
+package com.beerexpirytracker.repository;
+
+import com.beerexpirytracker.model.UserDevice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface UserDeviceRepository extends JpaRepository<UserDevice, UUID> {
+    
+    // One statement per login; the row is only rewritten when the token moved to another user or
+    // wasn't seen since refreshBefore, so repeat logins on the same device don't write at all
+    @Modifying
+    @Query(value = "INSERT INTO user_devices (id, user_id, token, created_at, last_seen_at) "
+            + "VALUES (?1, ?2, ?3, ?4, ?4) "
+            + "ON CONFLICT (token) DO UPDATE SET user_id = EXCLUDED.user_id, last_seen_at = EXCLUDED.last_seen_at "
+            + "WHERE user_devices.user_id <> EXCLUDED.user_id OR user_devices.last_seen_at < ?5",
+            nativeQuery = true)
+    int upsert(UUID id, UUID userId, String token, Instant now, Instant refreshBefore);
+    
+    // Returns (userId, token) pairs without loading the users
+    @Query("SELECT d.user.id, d.token FROM UserDevice d WHERE d.user.id IN ?1")
+    List<Object[]> findTokensByUserIdIn(Collection<UUID> userIds);
+    
+    @Query("SELECT d.token FROM UserDevice d WHERE d.user.id = ?1 ORDER BY d.lastSeenAt DESC")
+    List<String> findTokensByUserId(UUID userId);
+    
+    @Modifying
+    @Query("DELETE FROM UserDevice d WHERE d.token IN ?1")
+    int deleteByTokenIn(Collection<String> tokens);
+    
+    @Modifying
+    @Query("DELETE FROM UserDevice d WHERE d.user.id = ?1 AND d.token = ?2")
+    int deleteByUserIdAndToken(UUID userId, String token);
+}
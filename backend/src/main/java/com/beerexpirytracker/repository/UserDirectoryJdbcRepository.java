@@ -0,0 +1,44 @@
+package com.beerexpirytracker.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+// Username and email to user id across all shards, see V7__user_directory.sql. Callers bind the default
+// shard; plain JDBC so it never joins a JPA session on another shard.
+@Repository
+public class UserDirectoryJdbcRepository {
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    // Returns false when the username or email is already taken
+    public boolean insert(UUID userId, String username, String email) {
+        return jdbcTemplate.update("INSERT INTO user_directory (user_id, username, email) VALUES (?, ?, ?) "
+                + "ON CONFLICT DO NOTHING", userId, username, email) == 1;
+    }
+    
+    public Optional<UUID> findUserIdByUsername(String username) {
+        List<UUID> ids = jdbcTemplate.queryForList("SELECT user_id FROM user_directory WHERE username = ?",
+                UUID.class, username);
+        return ids.stream().findFirst();
+    }
+    
+    public boolean existsByUsername(String username) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM user_directory WHERE username = ?)", Boolean.class, username));
+    }
+    
+    public boolean existsByEmail(String email) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM user_directory WHERE email = ?)", Boolean.class, email));
+    }
+    
+    public int delete(UUID userId) {
+        return jdbcTemplate.update("DELETE FROM user_directory WHERE user_id = ?", userId);
+    }
+}
@@ -1,7 +1,9 @@
 package com.beerexpirytracker.repository;
 
 import com.beerexpirytracker.model.User;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -10,6 +12,8 @@ import java.util.UUID;
 @Repository
 public interface UserRepository extends JpaRepository<User, UUID> {
     
+    // Runs for every authenticated request; the cached result is dropped whenever users is written
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<User> findByUsername(String username);
     
     Optional<User> findByEmail(String email);
@@ -1,5 +1,6 @@
 package com.beerexpirytracker.security;
 
+import com.beerexpirytracker.service.UserShardRouter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,12 +10,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.UUID;
 
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
@@ -24,28 +25,43 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
     
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
+        UUID userId = null;
         try {
             String jwt = parseJwt(request);
             if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
                 String username = jwtUtils.getUserNameFromJwtToken(jwt);
                 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetailsImpl userDetails = userDetailsService.loadUser(username, jwtUtils.getUserIdFromJwtToken(jwt));
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+                userId = userDetails.getId();
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e.getMessage());
         }
         
-        filterChain.doFilter(request, response);
+        if (userId == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        // Everything the request does runs on the shard holding the user's data
+        UserShardRouter.Binding binding = userShardRouter.bind(userShardRouter.shardOf(userId));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            binding.close();
+        }
     }
     
     private String parseJwt(HttpServletRequest request) {
@@ -12,6 +12,7 @@ import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.Date;
+import java.util.UUID;
 
 @Component
 public class JwtUtils {
@@ -23,10 +24,17 @@ public class JwtUtils {
     @Value("${jwt.expiration}")
     private int jwtExpirationMs;
 
+    // The user id picks the database shard without a directory lookup on every request
+    private static final String USER_ID_CLAIM = "uid";
+
     public String generateJwtToken(Authentication authentication) {
         UserDetails userPrincipal = (UserDetails) authentication.getPrincipal();
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder();
+        if (userPrincipal instanceof UserDetailsImpl) {
+            builder.claim(USER_ID_CLAIM, ((UserDetailsImpl) userPrincipal).getId().toString());
+        }
+        return builder
                 .setSubject((userPrincipal.getUsername()))
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
@@ -43,6 +51,13 @@ public class JwtUtils {
                 .parseClaimsJws(token).getBody().getSubject();
     }
 
+    // Null for tokens issued before the claim was added
+    public UUID getUserIdFromJwtToken(String token) {
+        String userId = Jwts.parserBuilder().setSigningKey(key()).build()
+                .parseClaimsJws(token).getBody().get(USER_ID_CLAIM, String.class);
+        return userId != null ? UUID.fromString(userId) : null;
+    }
+
     public boolean validateJwtToken(String authToken) {
         try {
             Jwts.parserBuilder().setSigningKey(key()).build().parseClaimsJws(authToken);
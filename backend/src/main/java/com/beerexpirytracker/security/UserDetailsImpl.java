@@ -8,6 +8,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -33,8 +34,10 @@ public class UserDetailsImpl implements UserDetails {
     }
     
     public static UserDetailsImpl build(User user) {
-        // For simplicity, all users have USER role
-        Collection<GrantedAuthority> authorities = Collections.singleton(new SimpleGrantedAuthority("ROLE_USER"));
+        // All users have USER role; admins also get ADMIN for the operational endpoints
+        Collection<GrantedAuthority> authorities = user.isAdmin()
+                ? List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN"))
+                : Collections.singleton(new SimpleGrantedAuthority("ROLE_USER"));
         
         return new UserDetailsImpl(
                 user.getId(),
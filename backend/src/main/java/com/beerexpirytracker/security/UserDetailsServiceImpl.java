@@ -1,13 +1,16 @@
 package com.beerexpirytracker.security;
 
 import com.beerexpirytracker.model.User;
+import com.beerexpirytracker.repository.UserDirectoryJdbcRepository;
 import com.beerexpirytracker.repository.UserRepository;
+import com.beerexpirytracker.service.UserShardRouter;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
 
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
@@ -15,10 +18,29 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private UserDirectoryJdbcRepository userDirectoryRepository;
+    
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
     @Override
-    @Transactional
-    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
+    public UserDetailsImpl loadUserByUsername(String username) throws UsernameNotFoundException {
+        return loadUser(username, null);
+    }
+    
+    // The user id decides the shard; without one (login, older tokens) it is looked up in the directory
+    public UserDetailsImpl loadUser(String username, UUID userId) throws UsernameNotFoundException {
+        UUID id = userId != null ? userId : userShardRouter.callOnDirectory(
+                () -> userDirectoryRepository.findUserIdByUsername(username))
+                .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
+        
+        // Read-write, so it stays on the primary and finds an account registered a moment ago
+        User user = userShardRouter.callForUser(id,
+                () -> transactionTemplate.execute(status -> userRepository.findByUsername(username)))
                 .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
         
         return UserDetailsImpl.build(user);
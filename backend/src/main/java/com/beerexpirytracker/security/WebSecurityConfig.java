@@ -1,6 +1,8 @@
 package com.beerexpirytracker.security;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -15,11 +17,16 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.Arrays;
+import java.util.List;
 
 @Configuration
 @EnableWebSecurity
@@ -32,6 +39,13 @@ public class WebSecurityConfig {
     @Autowired
     private AuthEntryPointJwt unauthorizedHandler;
     
+    @Value("${management.server.port:-1}")
+    private int managementPort;
+    
+    // Scrapers that may read /actuator/prometheus on the management port without a token (addresses or CIDR ranges)
+    @Value("${metrics.prometheus.allowed-addresses:127.0.0.1,::1}")
+    private String[] prometheusAddresses;
+    
     @Bean
     public JwtAuthenticationFilter authenticationJwtTokenFilter() {
         return new JwtAuthenticationFilter();
@@ -76,11 +90,17 @@ public class WebSecurityConfig {
             .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> 
-                auth.requestMatchers("/api/auth/**").permitAll()
+                // Streamed responses finish in an async dispatch of a request that was already authorized
+                auth.dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                    .requestMatchers("/api/auth/**").permitAll()
                     .requestMatchers("/h2-console/**").permitAll()
                     .requestMatchers("/api/docs/**").permitAll()
                     .requestMatchers("/v3/api-docs/**").permitAll()
                     .requestMatchers("/swagger-ui/**").permitAll()
+                    .requestMatchers("/actuator/health").permitAll()
+                    .requestMatchers(prometheusScrape()).permitAll()
+                    // Metrics show user counts, reminder backlog and pool internals
+                    .requestMatchers("/actuator/**").hasRole("ADMIN")
                     .anyRequest().authenticated()
             );
         
@@ -92,4 +112,16 @@ public class WebSecurityConfig {
         
         return http.build();
     }
+    
+    // A scrape of the management port from one of the allowed addresses; anyone else needs an admin token
+    private RequestMatcher prometheusScrape() {
+        List<IpAddressMatcher> allowed = Arrays.stream(prometheusAddresses)
+                .map(String::trim)
+                .filter(address -> !address.isEmpty())
+                .map(IpAddressMatcher::new)
+                .toList();
+        return new AndRequestMatcher(AntPathRequestMatcher.antMatcher("/actuator/prometheus"),
+                request -> request.getLocalPort() == managementPort
+                        && allowed.stream().anyMatch(matcher -> matcher.matches(request)));
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.beerexpirytracker.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD concurrency limit for outbound calls: the limit grows by roughly one per round trip while
+ * latency stays under the target, and is cut multiplicatively when a call is slow or fails.
+ */
+public class AdaptiveConcurrencyLimiter {
+    
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final double backoffRatio;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    
+    private double limit;
+    private int inFlight = 0;
+    
+    public AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, int initialLimit, long latencyTargetMillis,
+                                      double backoffRatio) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+        this.backoffRatio = backoffRatio;
+    }
+    
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = permitReleased.awaitNanos(remaining);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public void release(long latencyNanos, boolean success) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (success && latencyNanos <= latencyTargetNanos) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            } else {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
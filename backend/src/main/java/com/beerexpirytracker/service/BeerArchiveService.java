@@ -0,0 +1,92 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.repository.BeerArchiveJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Keeps the beers table proportional to the live inventory. Once a night, beers whose expiry date is
+ * more than {@code archive.min-age-days} in the past are moved to beers_archive in small chunks, each
+ * its own transaction, until none are left or the run's time budget is used up. Archived beers keep
+ * their image references and are still listed when a request asks for them.
+ */
+@Service
+public class BeerArchiveService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BeerArchiveService.class);
+    
+    @Autowired
+    private BeerArchiveJdbcRepository archiveRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
+    @Value("${archive.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${archive.min-age-days:90}")
+    private int minAgeDays;
+    
+    // Small enough that each chunk's locks and WAL stay short
+    @Value("${archive.chunk-size:1000}")
+    private int chunkSize;
+    
+    // Stops a large backlog from running into the morning; the rest goes the next night
+    @Value("${archive.max-duration-minutes:60}")
+    private long maxDurationMinutes;
+    
+    private Counter archived;
+    
+    @PostConstruct
+    void init() {
+        archived = Counter.builder("beers.archived")
+                .description("Expired beers moved to beers_archive")
+                .register(meterRegistry);
+    }
+    
+    @Scheduled(cron = "${archive.cron:0 0 4 * * *}")
+    public void archiveExpired() {
+        if (!enabled) {
+            return;
+        }
+        userShardRouter.forEachShard(this::archiveShard);
+    }
+    
+    // Each shard gets the full time budget
+    private void archiveShard() {
+        LocalDate expiredBefore = LocalDate.now().minusDays(minAgeDays);
+        Instant deadline = Instant.now().plus(Duration.ofMinutes(maxDurationMinutes));
+        int total = 0;
+        int moved;
+        do {
+            Integer chunk = transactionTemplate.execute(status ->
+                    archiveRepository.archiveExpiredBefore(expiredBefore, chunkSize));
+            moved = chunk != null ? chunk : 0;
+            total += moved;
+            archived.increment(moved);
+        } while (moved == chunkSize && Instant.now().isBefore(deadline));
+        
+        if (total > 0) {
+            logger.info("Archived {} beers on {} that expired before {}", total, userShardRouter.currentShard(),
+                    expiredBefore);
+        }
+    }
+}
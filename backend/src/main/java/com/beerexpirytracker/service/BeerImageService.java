@@ -0,0 +1,144 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.repository.BeerImageView;
+import com.beerexpirytracker.repository.BeerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.UUID;
+
+// Resolves which file an image request should get and builds the versioned URLs handed to clients
+@Service
+public class BeerImageService {
+    
+    // Leading hex digits of the content hash used as the URL version
+    private static final int VERSION_LENGTH = 16;
+    
+    public enum Size { ORIGINAL, DETAIL, THUMB }
+    
+    public static class ImageFile {
+        private final Path path;
+        private final String contentHash;
+        private final String contentType;
+        
+        ImageFile(Path path, String contentHash, String contentType) {
+            this.path = path;
+            this.contentHash = contentHash;
+            this.contentType = contentType;
+        }
+        
+        public Path getPath() {
+            return path;
+        }
+        
+        // Null while the upload hasn't been processed yet
+        public String getContentHash() {
+            return contentHash;
+        }
+        
+        public String getContentType() {
+            return contentType;
+        }
+        
+        public boolean matchesVersion(String version) {
+            return version != null && contentHash != null && contentHash.startsWith(version)
+                    && version.length() == VERSION_LENGTH;
+        }
+    }
+    
+    @Autowired
+    private BeerRepository beerRepository;
+    
+    public static Size parseSize(String size) {
+        if (size == null) {
+            return Size.ORIGINAL;
+        }
+        try {
+            return Size.valueOf(size.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown image size: " + size);
+        }
+    }
+    
+    // Empty when the beer doesn't exist, isn't the user's, or has no image of that size
+    public Optional<ImageFile> findImage(UUID beerId, UUID userId, Size size) {
+        Optional<BeerImageView> found = beerRepository.findImageByIdAndUserId(beerId, userId);
+        if (found.isEmpty()) {
+            // Archived beers keep their images; only checked after the hot table misses
+            found = beerRepository.findArchivedImageByIdAndUserId(beerId, userId);
+        }
+        return found.flatMap(view -> {
+            String location = location(view, size);
+            if (location == null) {
+                return Optional.empty();
+            }
+            // Thumbnails are always re-encoded as JPEG; originals are whatever was uploaded
+            String contentType = size == Size.ORIGINAL ? guessContentType(location) : "image/jpeg";
+            return Optional.of(new ImageFile(Paths.get(location), view.getImageHash(), contentType));
+        });
+    }
+    
+    // API URL for one size of the beer's image, versioned by content hash; null if that size doesn't exist
+    public String imageUrl(Beer beer, Size size) {
+        String location;
+        switch (size) {
+            case THUMB:
+                location = beer.getThumbnailUrl();
+                break;
+            case DETAIL:
+                location = beer.getDetailImageUrl();
+                break;
+            default:
+                location = beer.getImageUrl();
+        }
+        if (location == null) {
+            return null;
+        }
+        
+        StringBuilder url = new StringBuilder("/api/beers/").append(beer.getId()).append("/image");
+        char separator = '?';
+        if (size != Size.ORIGINAL) {
+            url.append("?size=").append(size.name().toLowerCase());
+            separator = '&';
+        }
+        if (beer.getImageHash() != null) {
+            url.append(separator).append("v=").append(beer.getImageHash(), 0, VERSION_LENGTH);
+        }
+        return url.toString();
+    }
+    
+    private String location(BeerImageView view, Size size) {
+        switch (size) {
+            case THUMB:
+                return view.getThumbnailUrl();
+            case DETAIL:
+                return view.getDetailImageUrl();
+            default:
+                return view.getImageUrl();
+        }
+    }
+    
+    private String guessContentType(String location) {
+        String name = location.toLowerCase();
+        if (name.endsWith(".png")) {
+            return "image/png";
+        }
+        if (name.endsWith(".gif")) {
+            return "image/gif";
+        }
+        if (name.endsWith(".webp")) {
+            return "image/webp";
+        }
+        if (name.endsWith(".heic")) {
+            return "image/heic";
+        }
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+            return "image/jpeg";
+        }
+        return "application/octet-stream";
+    }
+}
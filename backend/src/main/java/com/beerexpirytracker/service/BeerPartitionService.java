@@ -0,0 +1,100 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.repository.BeerArchiveJdbcRepository;
+import com.beerexpirytracker.repository.BeerPartitionJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Maintains the monthly expiry_date partitions of beers. Nightly, it creates the partitions for the
+ * coming {@code partition.months-ahead} months. Months that lie entirely before the archive age are
+ * detached as a whole: their rows are copied to beers_archive and the partition is dropped, which is
+ * much cheaper than archiving them row by row. Each step is its own short transaction, serialized
+ * across nodes by an advisory lock.
+ */
+@Service
+public class BeerPartitionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BeerPartitionService.class);
+    
+    @Autowired
+    private BeerPartitionJdbcRepository partitionRepository;
+    
+    @Autowired
+    private BeerArchiveJdbcRepository archiveRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
+    @Value("${partition.months-ahead:12}")
+    private int monthsAhead;
+    
+    @Value("${archive.enabled:true}")
+    private boolean archiveEnabled;
+    
+    @Value("${archive.min-age-days:90}")
+    private int archiveMinAgeDays;
+    
+    // Before the archiver, so it only has to handle the partially archivable month
+    @Scheduled(cron = "${partition.maintenance-cron:0 30 3 * * *}")
+    public void maintainPartitions() {
+        userShardRouter.forEachShard(this::maintainShardPartitions);
+    }
+    
+    private void maintainShardPartitions() {
+        LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= monthsAhead; i++) {
+            LocalDate month = currentMonth.plusMonths(i);
+            transactionTemplate.executeWithoutResult(status -> {
+                partitionRepository.lock();
+                if (!partitionRepository.findPartitions().contains(BeerPartitionJdbcRepository.partitionName(month))) {
+                    int moved = partitionRepository.createPartition(month);
+                    logger.info("Created beers partition for {} ({} rows moved from the default partition)", month, moved);
+                }
+            });
+        }
+        
+        if (!archiveEnabled) {
+            return;
+        }
+        LocalDate archiveBefore = LocalDate.now().minusDays(archiveMinAgeDays);
+        List<String> partitions = partitionRepository.findPartitions();
+        for (String partition : partitions) {
+            LocalDate month = BeerPartitionJdbcRepository.monthOf(partition);
+            if (month == null || month.plusMonths(1).isAfter(archiveBefore)) {
+                continue;
+            }
+            // DETACH locks beers exclusively, so it gets a transaction of its own that commits right away
+            transactionTemplate.executeWithoutResult(status -> {
+                partitionRepository.lock();
+                if (partitionRepository.findPartitions().contains(partition)) {
+                    partitionRepository.detachPartition(partition);
+                }
+            });
+        }
+        
+        // Also picks up partitions detached by a run that stopped before archiving them
+        for (String detached : partitionRepository.findDetachedPartitions()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                partitionRepository.lock();
+                if (!partitionRepository.findDetachedPartitions().contains(detached)) {
+                    return;
+                }
+                int archived = archiveRepository.archiveTable(detached);
+                partitionRepository.dropTable(detached);
+                logger.info("Detached beers partition {} and archived its {} rows", detached, archived);
+            });
+        }
+    }
+}
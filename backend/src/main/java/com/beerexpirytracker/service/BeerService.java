@@ -1,8 +1,12 @@
 package com.beerexpirytracker.service;
 
 import com.beerexpirytracker.dto.BeerDTO;
+import com.beerexpirytracker.dto.ReminderBulkUpdateRequest;
 import com.beerexpirytracker.model.Beer;
 import com.beerexpirytracker.model.User;
+import com.beerexpirytracker.model.UuidV7;
+import com.beerexpirytracker.repository.BeerArchiveJdbcRepository;
+import com.beerexpirytracker.repository.BeerReminderJdbcRepository;
 import com.beerexpirytracker.repository.BeerRepository;
 import com.beerexpirytracker.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,12 +16,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -30,15 +29,43 @@ public class BeerService {
     @Autowired
     private UserRepository userRepository;
     
-    @Value("${file.upload-dir}")
-    private String uploadDir;
+    @Autowired
+    private ReminderWheelService reminderWheelService;
+    
+    @Autowired
+    private BeerReminderJdbcRepository beerReminderJdbcRepository;
+    
+    @Autowired
+    private BeerArchiveJdbcRepository beerArchiveJdbcRepository;
+    
+    @Autowired
+    private ReminderReleasePolicy releasePolicy;
+    
+    @Autowired
+    private ReminderPolicyService reminderPolicyService;
+    
+    @Value("${reminder.bulk-update.max-ids:10000}")
+    private int maxBulkIds;
+    
+    @Autowired
+    private ImageProcessingService imageProcessingService;
     
-    public List<BeerDTO> getAllBeersByUser(UUID userId) {
-        return beerRepository.findByUserId(userId).stream()
+    @Autowired
+    private BeerImageService beerImageService;
+    
+    // Listing and stats reads may be served by a read replica (see ReplicaRoutingDataSource)
+    @Transactional(readOnly = true)
+    public List<BeerDTO> getAllBeersByUser(UUID userId, boolean includeArchived) {
+        List<BeerDTO> beers = beerRepository.findByUserId(userId).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
+        if (includeArchived) {
+            beers.addAll(toArchivedDTOs(beerArchiveJdbcRepository.findByUserId(userId)));
+        }
+        return beers;
     }
     
+    @Transactional(readOnly = true)
     public BeerDTO getBeerById(UUID id, UUID userId) {
         Beer beer = beerRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Beer not found with id: " + id));
@@ -57,22 +84,22 @@ public class BeerService {
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
         
         Beer beer = new Beer();
+        beer.setId(UuidV7.generate());
         beer.setBrandName(brandName);
         beer.setProductName(productName);
         beer.setType(type);
         beer.setExpiryDate(expiryDate);
+        beer.setReminderDate(expiryDate.minusDays(reminderPolicyService.leadDaysFor(userId, type)));
         beer.setUser(user);
         
-        // Save the beer first to get an ID
-        Beer savedBeer = beerRepository.save(beer);
-        
-        // Handle image upload
+        // The id is known up front, so the image is stored first and the row is inserted once with it;
+        // thumbnails are generated in the background after commit
         if (image != null && !image.isEmpty()) {
-            String imagePath = saveImage(image, savedBeer.getId());
-            savedBeer.setImageUrl(imagePath);
-            savedBeer = beerRepository.save(savedBeer);
+            imageProcessingService.attach(beer, image);
         }
+        Beer savedBeer = beerRepository.save(beer);
         
+        reminderWheelService.schedule(savedBeer);
         return convertToDTO(savedBeer);
     }
     
@@ -90,14 +117,19 @@ public class BeerService {
         beer.setProductName(productName);
         beer.setType(type);
         beer.setExpiryDate(expiryDate);
+        LocalDate reminderDate = expiryDate.minusDays(reminderPolicyService.leadDaysFor(userId, type));
+        // Editing the beer doesn't cancel a snooze
+        LocalDate snoozedUntil = beer.getReminderSnoozedUntil();
+        beer.setReminderDate(snoozedUntil != null && snoozedUntil.isAfter(reminderDate) ? snoozedUntil : reminderDate);
         
-        // Handle image upload
+        // The old image is released; unless the new one is already stored, the beer shows as pending
         if (image != null && !image.isEmpty()) {
-            String imagePath = saveImage(image, id);
-            beer.setImageUrl(imagePath);
+            imageProcessingService.attach(beer, image);
         }
         
         Beer updatedBeer = beerRepository.save(beer);
+        // The expiry date may have moved the reminder
+        reminderWheelService.schedule(updatedBeer);
         return convertToDTO(updatedBeer);
     }
     
@@ -110,28 +142,52 @@ public class BeerService {
             throw new RuntimeException("You don't have permission to delete this beer");
         }
         
-        // Delete the associated image if exists
-        if (beer.getImageUrl() != null) {
-            try {
-                Path imagePath = Paths.get(beer.getImageUrl());
-                Files.deleteIfExists(imagePath);
-            } catch (IOException e) {
-                // Log the error but continue with beer deletion
-                System.err.println("Failed to delete image: " + e.getMessage());
+        // The image files go once no other beer uses them
+        imageProcessingService.release(beer);
+        
+        beerRepository.delete(beer);
+        reminderWheelService.unschedule(id);
+    }
+    
+    // Snooze or dismiss reminders for a whole selection of the user's beers in one UPDATE
+    @Transactional
+    public int bulkUpdateReminders(ReminderBulkUpdateRequest request, UUID userId) {
+        boolean hasIds = request.getIds() != null && !request.getIds().isEmpty();
+        boolean hasFilter = request.getBrandName() != null || request.getProductName() != null
+                || request.getType() != null || request.getExpiryFrom() != null || request.getExpiryTo() != null;
+        if (!hasIds && !hasFilter) {
+            throw new IllegalArgumentException("Either ids or at least one filter is required");
+        }
+        if (hasIds && request.getIds().size() > maxBulkIds) {
+            throw new IllegalArgumentException("At most " + maxBulkIds + " ids can be updated at once");
+        }
+        
+        Integer days = null;
+        if (request.getAction() == ReminderBulkUpdateRequest.Action.SNOOZE) {
+            if (request.getDays() == null || request.getDays() <= 0) {
+                throw new IllegalArgumentException("Snooze requires a positive number of days");
             }
+            days = request.getDays();
         }
         
-        beerRepository.delete(beer);
+        // Updated rows get a new updated_at, so the reminder wheel resyncs them without loading them here
+        return beerReminderJdbcRepository.bulkUpdateReminders(userId, request, days,
+                releasePolicy.getDefaultTimeZone());
     }
     
-    public List<BeerDTO> searchBeers(String query, UUID userId) {
-        return beerRepository.findByBrandNameContainingIgnoreCaseOrProductNameContainingIgnoreCase(query, query)
+    @Transactional(readOnly = true)
+    public List<BeerDTO> searchBeers(String query, UUID userId, boolean includeArchived) {
+        List<BeerDTO> beers = beerRepository.searchByUserId(userId, query)
                 .stream()
-                .filter(beer -> beer.getUser().getId().equals(userId))
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
+        if (includeArchived) {
+            beers.addAll(toArchivedDTOs(beerArchiveJdbcRepository.search(userId, query)));
+        }
+        return beers;
     }
     
+    @Transactional(readOnly = true)
     public List<BeerDTO> getUpcomingExpiringBeers(UUID userId, int daysAhead) {
         LocalDate startDate = LocalDate.now();
         LocalDate endDate = startDate.plusDays(daysAhead);
@@ -142,163 +198,64 @@ public class BeerService {
                 .collect(Collectors.toList());
     }
     
+    @Transactional(readOnly = true)
     public Map<String, Object> getExpiryTimelineStats(UUID userId) {
         List<Beer> userBeers = beerRepository.findByUserId(userId);
-        LocalDate today = LocalDate.now();
-        
-        Map<String, Object> result = new HashMap<>();
-        
-        // Group beers by expiry status
-        long expired = userBeers.stream()
-                .filter(beer -> beer.getExpiryDate().isBefore(today))
-                .count();
-        
-        long expiringWithin30Days = userBeers.stream()
-                .filter(beer -> !beer.getExpiryDate().isBefore(today) && 
-                               beer.getExpiryDate().isBefore(today.plusDays(30)))
-                .count();
-        
-        long expiringWithin90Days = userBeers.stream()
-                .filter(beer -> !beer.getExpiryDate().isBefore(today) && 
-                               beer.getExpiryDate().isBefore(today.plusDays(90)) &&
-                               !beer.getExpiryDate().isBefore(today.plusDays(30)))
-                .count();
-        
-        long expiringAfter90Days = userBeers.stream()
-                .filter(beer -> !beer.getExpiryDate().isBefore(today.plusDays(90)))
-                .count();
-        
-        Map<String, Long> expiryBreakdown = new HashMap<>();
-        expiryBreakdown.put("expired", expired);
-        expiryBreakdown.put("within30Days", expiringWithin30Days);
-        expiryBreakdown.put("within90Days", expiringWithin90Days);
-        expiryBreakdown.put("after90Days", expiringAfter90Days);
-        
-        result.put("expiryBreakdown", expiryBreakdown);
-        
-        // Monthly expiry count for the next 6 months
-        Map<String, Long> monthlyExpiry = new HashMap<>();
-        for (int i = 0; i < 6; i++) {
-            LocalDate monthStart = today.plusMonths(i).withDayOfMonth(1);
-            LocalDate monthEnd = monthStart.plusMonths(1).minusDays(1);
-            
-            long count = userBeers.stream()
-                    .filter(beer -> !beer.getExpiryDate().isBefore(monthStart) && 
-                                   !beer.getExpiryDate().isAfter(monthEnd))
-                    .count();
-            
-            monthlyExpiry.put(monthStart.getYear() + "-" + monthStart.getMonthValue(), count);
-        }
-        
-        result.put("monthlyExpiry", monthlyExpiry);
-        
-        return result;
+        return BeerStats.expiryTimeline(countByExpiryDate(userBeers), LocalDate.now());
     }
     
+    @Transactional(readOnly = true)
     public Map<String, Long> getTypeDistributionStats(UUID userId) {
         List<Beer> userBeers = beerRepository.findByUserId(userId);
-        
-        // Group beers by type and count them
-        Map<String, Long> typeDistribution = userBeers.stream()
-                .collect(Collectors.groupingBy(
-                    beer -> beer.getType() != null && !beer.getType().trim().isEmpty() ? beer.getType() : "Unknown",
-                    Collectors.counting()
-                ));
-        
-        return typeDistribution;
+        return BeerStats.typeDistribution(countByType(userBeers));
     }
     
+    @Transactional(readOnly = true)
     public Map<String, Long> getBrandDistributionStats(UUID userId) {
         List<Beer> userBeers = beerRepository.findByUserId(userId);
         
-        // Group beers by brand and count them, limiting to top 10
-        Map<String, Long> brandCounts = userBeers.stream()
-                .collect(Collectors.groupingBy(Beer::getBrandName, Collectors.counting()));
-        
-        // Sort by count in descending order and take top 10
-        return brandCounts.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(10)
-                .collect(Collectors.toMap(
-                    Map.Entry::getKey,
-                    Map.Entry::getValue,
-                    (e1, e2) -> e1,
-                    LinkedHashMap::new
-                ));
+        // Top 10 brands by number of beers
+        return BeerStats.top(userBeers.stream()
+                .collect(Collectors.groupingBy(Beer::getBrandName, Collectors.counting())), 10);
     }
     
+    @Transactional(readOnly = true)
     public Map<String, Object> getStatsSummary(UUID userId) {
         List<Beer> userBeers = beerRepository.findByUserId(userId);
-        LocalDate today = LocalDate.now();
-        
-        Map<String, Object> summary = new HashMap<>();
-        
-        // Total beers count
-        summary.put("totalBeers", userBeers.size());
-        
-        // Expired beers count
-        long expiredCount = userBeers.stream()
-                .filter(beer -> beer.getExpiryDate().isBefore(today))
-                .count();
-        summary.put("expiredBeers", expiredCount);
-        
-        // Beers expiring soon (within 30 days)
-        long expiringSoonCount = userBeers.stream()
-                .filter(beer -> !beer.getExpiryDate().isBefore(today) && 
-                               beer.getExpiryDate().isBefore(today.plusDays(30)))
-                .count();
-        summary.put("expiringSoon", expiringSoonCount);
-        
-        // Calculate average days until expiry for non-expired beers
-        OptionalDouble avgDaysUntilExpiry = userBeers.stream()
-                .filter(beer -> !beer.getExpiryDate().isBefore(today))
-                .mapToLong(beer -> ChronoUnit.DAYS.between(today, beer.getExpiryDate()))
-                .average();
-        
-        summary.put("avgDaysUntilExpiry", avgDaysUntilExpiry.isPresent() ? avgDaysUntilExpiry.getAsDouble() : 0);
-        
-        // Most common beer types (top 3)
-        Map<String, Long> typeDistribution = userBeers.stream()
-                .filter(beer -> beer.getType() != null && !beer.getType().trim().isEmpty())
-                .collect(Collectors.groupingBy(Beer::getType, Collectors.counting()));
-        
-        List<Map.Entry<String, Long>> topTypes = typeDistribution.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                .limit(3)
-                .collect(Collectors.toList());
-        
-        summary.put("topBeerTypes", topTypes.stream()
-                .map(entry -> Map.of("type", entry.getKey(), "count", entry.getValue()))
-                .collect(Collectors.toList()));
-        
-        return summary;
+        return BeerStats.summary(countByExpiryDate(userBeers), countByType(userBeers), LocalDate.now());
     }
     
-    private String saveImage(MultipartFile file, UUID beerId) throws IOException {
-        // Create directory if it doesn't exist
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-        
-        // Create a unique file name
-        String fileName = beerId + "_" + System.currentTimeMillis() + "_" + file.getOriginalFilename();
-        Path filePath = uploadPath.resolve(fileName);
-        
-        // Save the file
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-        
-        return filePath.toString();
+    private Map<LocalDate, Long> countByExpiryDate(List<Beer> beers) {
+        return beers.stream().collect(Collectors.groupingBy(Beer::getExpiryDate, Collectors.counting()));
+    }
+    
+    private Map<String, Long> countByType(List<Beer> beers) {
+        return beers.stream().collect(Collectors.groupingBy(
+                beer -> beer.getType() != null ? beer.getType() : "", Collectors.counting()));
+    }
+    
+    private List<BeerDTO> toArchivedDTOs(List<Beer> archivedBeers) {
+        return archivedBeers.stream()
+                .map(beer -> {
+                    BeerDTO dto = convertToDTO(beer);
+                    dto.setArchived(true);
+                    return dto;
+                })
+                .collect(Collectors.toList());
     }
     
-    private BeerDTO convertToDTO(Beer beer) {
+    // Also used by the reactive read path
+    BeerDTO convertToDTO(Beer beer) {
         return new BeerDTO(
                 beer.getId(),
                 beer.getBrandName(),
                 beer.getProductName(),
                 beer.getType(),
                 beer.getExpiryDate(),
-                beer.getImageUrl()
+                beerImageService.imageUrl(beer, BeerImageService.Size.ORIGINAL),
+                beerImageService.imageUrl(beer, BeerImageService.Size.THUMB),
+                beerImageService.imageUrl(beer, BeerImageService.Size.DETAIL),
+                beer.getImageState() != null ? beer.getImageState().name() : null
         );
     }
 } 
\ No newline at end of file
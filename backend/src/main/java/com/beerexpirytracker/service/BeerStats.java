@@ -0,0 +1,102 @@
+package com.beerexpirytracker.service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Builds the stats responses from beer counts per expiry date, type and brand, so the JPA and the
+// reactive read paths return the same figures whichever way they counted. Types are keyed with
+// "" for beers without one.
+final class BeerStats {
+    
+    private BeerStats() {
+    }
+    
+    static Map<String, Object> expiryTimeline(Map<LocalDate, Long> countsByExpiryDate, LocalDate today) {
+        Map<String, Object> result = new HashMap<>();
+        
+        // Group beers by expiry status
+        Map<String, Long> expiryBreakdown = new HashMap<>();
+        expiryBreakdown.put("expired", count(countsByExpiryDate, LocalDate.MIN, today));
+        expiryBreakdown.put("within30Days", count(countsByExpiryDate, today, today.plusDays(30)));
+        expiryBreakdown.put("within90Days", count(countsByExpiryDate, today.plusDays(30), today.plusDays(90)));
+        expiryBreakdown.put("after90Days", count(countsByExpiryDate, today.plusDays(90), LocalDate.MAX));
+        
+        result.put("expiryBreakdown", expiryBreakdown);
+        
+        // Monthly expiry count for the next 6 months
+        Map<String, Long> monthlyExpiry = new HashMap<>();
+        for (int i = 0; i < 6; i++) {
+            LocalDate monthStart = today.plusMonths(i).withDayOfMonth(1);
+            monthlyExpiry.put(monthStart.getYear() + "-" + monthStart.getMonthValue(),
+                    count(countsByExpiryDate, monthStart, monthStart.plusMonths(1)));
+        }
+        
+        result.put("monthlyExpiry", monthlyExpiry);
+        
+        return result;
+    }
+    
+    // Beers without a type are counted under "Unknown"
+    static Map<String, Long> typeDistribution(Map<String, Long> countsByType) {
+        Map<String, Long> typeDistribution = new HashMap<>();
+        countsByType.forEach((type, count) ->
+                typeDistribution.merge(type.trim().isEmpty() ? "Unknown" : type, count, Long::sum));
+        return typeDistribution;
+    }
+    
+    static Map<String, Object> summary(Map<LocalDate, Long> countsByExpiryDate, Map<String, Long> countsByType,
+                                       LocalDate today) {
+        Map<String, Object> summary = new HashMap<>();
+        
+        summary.put("totalBeers", count(countsByExpiryDate, LocalDate.MIN, LocalDate.MAX));
+        summary.put("expiredBeers", count(countsByExpiryDate, LocalDate.MIN, today));
+        // Beers expiring soon (within 30 days)
+        summary.put("expiringSoon", count(countsByExpiryDate, today, today.plusDays(30)));
+        
+        // Average days until expiry for non-expired beers
+        long beers = 0;
+        long days = 0;
+        for (Map.Entry<LocalDate, Long> entry : countsByExpiryDate.entrySet()) {
+            if (!entry.getKey().isBefore(today)) {
+                beers += entry.getValue();
+                days += ChronoUnit.DAYS.between(today, entry.getKey()) * entry.getValue();
+            }
+        }
+        summary.put("avgDaysUntilExpiry", beers > 0 ? (double) days / beers : 0);
+        
+        // Most common beer types (top 3), leaving out beers without one
+        Map<String, Long> typed = countsByType.entrySet().stream()
+                .filter(entry -> !entry.getKey().trim().isEmpty())
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        summary.put("topBeerTypes", top(typed, 3).entrySet().stream()
+                .map(entry -> Map.of("type", entry.getKey(), "count", entry.getValue()))
+                .collect(Collectors.toList()));
+        
+        return summary;
+    }
+    
+    // The largest counts in descending order
+    static Map<String, Long> top(Map<String, Long> counts, int limit) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limit)
+                .collect(Collectors.toMap(
+                    Map.Entry::getKey,
+                    Map.Entry::getValue,
+                    (e1, e2) -> e1,
+                    LinkedHashMap::new
+                ));
+    }
+    
+    // Beers expiring on or after from and before until
+    private static long count(Map<LocalDate, Long> countsByExpiryDate, LocalDate from, LocalDate until) {
+        return countsByExpiryDate.entrySet().stream()
+                .filter(entry -> !entry.getKey().isBefore(from) && entry.getKey().isBefore(until))
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+    }
+}
@@ -0,0 +1,64 @@
+package com.beerexpirytracker.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Consistent hash ring. Each node is placed at {@code pointsPerNode} pseudo-random points and a key
+ * belongs to the first point at or after its own hash, wrapping around. Adding a node only takes over
+ * the arcs in front of its points, so about 1/n of the keys move and no key moves between old nodes.
+ * Point positions depend only on the node names, so every JVM builds the same ring.
+ */
+public class ConsistentHashRing<T> {
+    
+    private final NavigableMap<Long, T> points = new TreeMap<>();
+    
+    public ConsistentHashRing(Collection<T> nodes, int pointsPerNode) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        for (T node : nodes) {
+            for (int i = 0; i < pointsPerNode; i++) {
+                // On the rare collision the smaller name keeps the point, whatever order the nodes come in
+                points.merge(hash(node + "#" + i), node, (existing, added) ->
+                        existing.toString().compareTo(added.toString()) <= 0 ? existing : added);
+            }
+        }
+    }
+    
+    public T nodeFor(UUID key) {
+        Map.Entry<Long, T> point = points.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+    
+    // UUIDv7 ids start with a timestamp, so both halves are mixed before they place the key
+    static long hash(UUID key) {
+        return mix(key.getMostSignificantBits() ^ mix(key.getLeastSignificantBits()));
+    }
+    
+    private static long hash(String label) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(label.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+    
+    // MurmurHash3's 64-bit finalizer
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,110 @@
+package com.beerexpirytracker.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Hierarchical timing wheel. Level 0 has {@code wheelSize} buckets of {@code tickMillis}; each higher
+ * level has buckets as wide as the whole level below it. Entries are placed on the lowest level that
+ * can hold their deadline and cascade down as time advances, so adding and expiring an entry is O(1)
+ * regardless of how many are scheduled. Entries fire on the first tick boundary after their deadline.
+ */
+public class HierarchicalTimingWheel<T> {
+    
+    private final int wheelSize;
+    private final long[] tickMillis;
+    private final long[] currentTime;
+    private final List<List<Entry<T>>> buckets = new ArrayList<>();
+    private final List<Entry<T>> ready = new ArrayList<>();
+    private int size = 0;
+    
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, int levels, long startMillis) {
+        this.wheelSize = wheelSize;
+        this.tickMillis = new long[levels];
+        this.currentTime = new long[levels];
+        long tick = tickMillis;
+        for (int level = 0; level < levels; level++) {
+            this.tickMillis[level] = tick;
+            this.currentTime[level] = startMillis - Math.floorMod(startMillis, tick);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new ArrayList<>());
+            }
+            tick *= wheelSize;
+        }
+    }
+    
+    // Returns false if the deadline is beyond what the top level can hold
+    public synchronized boolean add(T item, long deadlineMillis) {
+        if (!place(new Entry<>(item, deadlineMillis))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+    
+    // Moves the wheel forward to {@code nowMillis} and hands every expired entry to the consumer
+    public synchronized void advance(long nowMillis, BiConsumer<T, Long> expired) {
+        while (currentTime[0] + tickMillis[0] <= nowMillis) {
+            step();
+        }
+        for (Entry<T> entry : ready) {
+            expired.accept(entry.item, entry.deadline);
+        }
+        size -= ready.size();
+        ready.clear();
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+    
+    private boolean place(Entry<T> entry) {
+        if (entry.deadline < currentTime[0]) {
+            ready.add(entry);
+            return true;
+        }
+        for (int level = 0; level < tickMillis.length; level++) {
+            if (entry.deadline < currentTime[level] + tickMillis[level] * wheelSize) {
+                bucket(level, entry.deadline).add(entry);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void step() {
+        // The bucket for the tick that just ended holds only expired entries
+        List<Entry<T>> expiredBucket = bucket(0, currentTime[0]);
+        ready.addAll(expiredBucket);
+        expiredBucket.clear();
+        
+        long next = currentTime[0] + tickMillis[0];
+        currentTime[0] = next;
+        
+        // Crossing a boundary of a higher level: its bucket for the new interval now fits below, so cascade it
+        for (int level = 1; level < tickMillis.length && next % tickMillis[level] == 0; level++) {
+            currentTime[level] = next;
+            List<Entry<T>> cascading = new ArrayList<>(bucket(level, next));
+            bucket(level, next).clear();
+            for (Entry<T> entry : cascading) {
+                place(entry);
+            }
+        }
+    }
+    
+    private List<Entry<T>> bucket(int level, long time) {
+        int index = (int) Math.floorMod(time / tickMillis[level], (long) wheelSize);
+        return buckets.get(level * wheelSize + index);
+    }
+    
+    private static final class Entry<T> {
+        private final T item;
+        private final long deadline;
+        
+        private Entry(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.config.ShardRoutingDataSource;
+import com.beerexpirytracker.model.ImageBlob;
+import com.beerexpirytracker.repository.ImageBlobRepository;
+import com.beerexpirytracker.repository.ImageFileDeletionJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Content-addressed image storage. Each distinct original is stored once under
+ * {@code blobs/<h0h1>/<h2h3>/<hash>}, together with its thumbnails, and counts the beers using it.
+ * Blobs whose count has stayed at zero for the grace period are removed by a periodic collector. Each
+ * database shard counts references to its own copies, under {@code blobs/<shard>/} for all but the
+ * default shard.
+ */
+@Service
+public class ImageBlobService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ImageBlobService.class);
+    
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+    
+    @Autowired
+    private ImageFileDeletionJdbcRepository imageFileDeletionRepository;
+    
+    @Autowired
+    private ImageCache imageCache;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+    
+    // Covers uploads that are released and re-attached shortly after, e.g. an edit that is undone
+    @Value("${image.gc.grace-period-hours:24}")
+    private long gracePeriodHours;
+    
+    @Value("${image.gc.batch-size:500}")
+    private int gcBatchSize;
+    
+    private Path blobDir;
+    private Counter collected;
+    
+    @PostConstruct
+    void init() throws IOException {
+        blobDir = Files.createDirectories(Paths.get(uploadDir).resolve("blobs"));
+        collected = Counter.builder("image.blobs.collected")
+                .description("Unreferenced image blobs removed by the collector")
+                .register(meterRegistry);
+    }
+    
+    // Two levels of 256 directories keep each directory small even with millions of images
+    public Path pathFor(String hash, String suffix) {
+        return pathFor(userShardRouter.currentShard(), hash, suffix);
+    }
+    
+    public Path pathFor(String shard, String hash, String suffix) {
+        Path shardDir = ShardRoutingDataSource.DEFAULT_SHARD.equals(shard) ? blobDir : blobDir.resolve(shard);
+        return shardDir.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash + suffix);
+    }
+    
+    // Every blob path starts with this, as stored in the database
+    public String getBlobPathPrefix() {
+        return blobDir.toString() + blobDir.getFileSystem().getSeparator();
+    }
+    
+    public boolean isBlob(String path) {
+        return path != null && Paths.get(path).startsWith(blobDir);
+    }
+    
+    // Takes a reference on an already stored image; empty if it has to be stored first
+    public Optional<ImageBlob> acquire(String hash) {
+        if (imageBlobRepository.retain(hash) == 0) {
+            return Optional.empty();
+        }
+        return imageBlobRepository.findById(hash);
+    }
+    
+    public void release(String hash) {
+        if (hash != null) {
+            imageBlobRepository.release(hash, Instant.now());
+        }
+    }
+    
+    // Must run in a transaction. Returns the stored blob for the hash, creating it with the given paths if
+    // it doesn't exist; the row stays locked until commit.
+    public ImageBlob register(String hash, String originalPath, String thumbnailPath, String detailPath, long sizeBytes) {
+        imageBlobRepository.register(hash, originalPath, thumbnailPath, detailPath, sizeBytes, Instant.now());
+        return imageBlobRepository.findById(hash)
+                .orElseThrow(() -> new IllegalStateException("Image blob " + hash + " vanished after registration"));
+    }
+    
+    public void retain(String hash) {
+        imageBlobRepository.retain(hash);
+    }
+    
+    // Moves a freshly written file to its blob path unless an identical copy is already there
+    public void install(Path source, String target) {
+        if (target == null) {
+            return;
+        }
+        try {
+            Path targetPath = Paths.get(target);
+            if (!Files.exists(targetPath)) {
+                Files.createDirectories(targetPath.getParent());
+                Files.move(source, targetPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store image blob " + target, e);
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${image.gc.interval-ms:3600000}", initialDelayString = "${image.gc.initial-delay-ms:300000}")
+    public void collectGarbage() {
+        userShardRouter.forEachShard(this::collectShardGarbage);
+    }
+    
+    private void collectShardGarbage() {
+        Instant cutoff = Instant.now().minus(Duration.ofHours(gracePeriodHours));
+        List<ImageBlob> candidates = imageBlobRepository.findUnreferencedSince(cutoff, PageRequest.of(0, gcBatchSize));
+        int removed = 0;
+        for (ImageBlob blob : candidates) {
+            // The files go while the deleted row is still locked, so a concurrent upload of the same image
+            // waits for this commit and then stores it afresh
+            Boolean deleted = transactionTemplate.execute(status -> {
+                if (imageBlobRepository.deleteUnreferenced(blob.getHash(), cutoff) == 0) {
+                    return false;
+                }
+                deleteFiles(blob.getOriginalPath(), blob.getThumbnailPath(), blob.getDetailPath());
+                return true;
+            });
+            if (Boolean.TRUE.equals(deleted)) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            collected.increment(removed);
+            logger.info("Removed {} unreferenced image blobs", removed);
+        }
+    }
+    
+    // Deletes the files queued by bulk deletes, a batch per transaction until the queue is empty
+    @Scheduled(fixedDelayString = "${image.file-deletion.interval-ms:30000}")
+    public void deleteQueuedFiles() {
+        userShardRouter.forEachShard(this::deleteShardQueuedFiles);
+    }
+    
+    private void deleteShardQueuedFiles() {
+        int deleted;
+        do {
+            Integer batch = transactionTemplate.execute(status -> {
+                List<Map<String, Object>> queued = imageFileDeletionRepository.lockBatch(gcBatchSize);
+                List<Long> ids = new ArrayList<>();
+                for (Map<String, Object> row : queued) {
+                    deleteFiles((String) row.get("path"));
+                    ids.add(((Number) row.get("id")).longValue());
+                }
+                if (!ids.isEmpty()) {
+                    imageFileDeletionRepository.delete(ids);
+                }
+                return ids.size();
+            });
+            deleted = batch != null ? batch : 0;
+        } while (deleted == gcBatchSize);
+    }
+    
+    private void deleteFiles(String... paths) {
+        imageCache.invalidate(paths);
+        for (String path : paths) {
+            if (path == null) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(Paths.get(path));
+            } catch (IOException e) {
+                logger.warn("Failed to delete image blob file {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
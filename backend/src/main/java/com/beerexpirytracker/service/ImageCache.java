@@ -0,0 +1,153 @@
+package com.beerexpirytracker.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the bytes of small, frequently requested image files (thumbnails and detail images) in direct
+ * buffers outside the Java heap, evicting the least recently used files once the memory budget is
+ * exceeded. Only content-addressed files are cached: their bytes never change under the same path, so
+ * entries only have to be dropped when the file is deleted.
+ */
+@Component
+public class ImageCache {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ImageCache.class);
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    // Direct memory is outside -Xmx; -XX:MaxDirectMemorySize must leave room for this budget
+    @Value("${image.cache.max-bytes:67108864}")
+    private long maxBytes;
+    
+    // Larger files (originals) are streamed from disk instead
+    @Value("${image.cache.max-entry-bytes:524288}")
+    private long maxEntryBytes;
+    
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, ByteBuffer> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes = 0;
+    
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+    
+    @PostConstruct
+    void init() {
+        hits = Counter.builder("image.cache.requests").tag("result", "hit")
+                .description("Image requests served from the off-heap cache").register(meterRegistry);
+        misses = Counter.builder("image.cache.requests").tag("result", "miss")
+                .description("Image requests that had to read the file").register(meterRegistry);
+        evictions = Counter.builder("image.cache.evictions")
+                .description("Images evicted to stay within the cache budget").register(meterRegistry);
+        Gauge.builder("image.cache.bytes", this, ImageCache::usedBytes)
+                .description("Off-heap bytes held by the image cache").baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("image.cache.entries", this, ImageCache::size)
+                .description("Images held by the image cache").register(meterRegistry);
+    }
+    
+    // The file's bytes as a read-only buffer positioned at 0, loading them on a miss. Null when the file
+    // doesn't exist or is too large to cache.
+    public ByteBuffer get(Path path) {
+        String key = path.toString();
+        synchronized (this) {
+            ByteBuffer cached = entries.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached.duplicate();
+            }
+        }
+        misses.increment();
+        
+        // Read outside the lock; two requests missing at once both read the file, and the later put wins
+        ByteBuffer loaded;
+        try {
+            loaded = read(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Failed to cache image {}: {}", path, e.getMessage());
+            return null;
+        }
+        if (loaded == null) {
+            return null;
+        }
+        put(key, loaded);
+        return loaded.duplicate();
+    }
+    
+    public synchronized void invalidate(String... paths) {
+        for (String path : paths) {
+            if (path != null) {
+                ByteBuffer removed = entries.remove(path);
+                if (removed != null) {
+                    usedBytes -= removed.capacity();
+                }
+            }
+        }
+    }
+    
+    private ByteBuffer read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > maxEntryBytes || size > maxBytes) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("File shrank while reading");
+                }
+            }
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+    
+    private synchronized void put(String key, ByteBuffer buffer) {
+        ByteBuffer previous = entries.put(key, buffer);
+        if (previous != null) {
+            usedBytes -= previous.capacity();
+        }
+        usedBytes += buffer.capacity();
+        
+        // Evicted buffers are freed by their cleaner once no response is still writing from them
+        Iterator<Map.Entry<String, ByteBuffer>> eldest = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, ByteBuffer> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                continue;
+            }
+            usedBytes -= entry.getValue().capacity();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+    
+    private synchronized long usedBytes() {
+        return usedBytes;
+    }
+    
+    private synchronized int size() {
+        return entries.size();
+    }
+}
@@ -1,8 +1,11 @@
 package com.beerexpirytracker.service;
 
 import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.model.BeerKey;
 import com.beerexpirytracker.model.User;
+import com.beerexpirytracker.repository.BeerReminderJdbcRepository;
 import com.beerexpirytracker.repository.BeerRepository;
+import com.beerexpirytracker.repository.UserDeviceRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,17 +14,22 @@ import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.DayOfWeek;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Service
 public class NotificationService {
@@ -31,129 +39,345 @@ public class NotificationService {
     @Autowired
     private BeerRepository beerRepository;
     
+    @Autowired
+    private BeerReminderJdbcRepository beerReminderJdbcRepository;
+    
+    @Autowired
+    private UserDeviceRepository userDeviceRepository;
+    
     @Autowired
     private JavaMailSender emailSender;
     
+    @Autowired
+    private ReminderLeaseService reminderLeaseService;
+    
+    @Autowired
+    private ReminderWheelService reminderWheelService;
+    
+    @Autowired
+    private ReminderReleasePolicy releasePolicy;
+    
+    @Autowired
+    private NotificationTemplateEngine templateEngine;
+    
+    @Autowired
+    private ReminderMetrics reminderMetrics;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
+    @Value("${reminder.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${reminder.release.interval-ms:60000}")
+    private long releaseIntervalMs;
+    
+    @Value("${reminder.retry-delay-ms:1800000}")
+    private long retryDelayMs;
+    
+    // Longer than sending one batch may take; a node that died mid-send leaves its claim for this long
+    @Value("${reminder.claim-timeout-ms:900000}")
+    private long claimTimeoutMs;
+    
     @Value("${push.notification.enabled}")
     private boolean pushNotificationEnabled;
     
-    @Value("${push.notification.api-key}")
-    private String firebaseApiKey;
-    
-    private final HttpClient httpClient = HttpClient.newHttpClient();
+    @Autowired
+    private PushNotificationClient pushNotificationClient;
     
-    // Run daily at 9:00 AM
-    @Scheduled(cron = "0 0 9 * * ?")
-    @Transactional
+    // Release reminders continuously: each tick sends whatever became due in users' local delivery windows
+    @Scheduled(fixedRateString = "${reminder.release.interval-ms:60000}")
     public void checkBeersAndSendReminders() {
-        logger.info("Running scheduled reminder check");
+        logger.debug("Running scheduled reminder release");
         
-        LocalDate today = LocalDate.now();
-        
-        // Skip weekends if needed
-        if (isWeekend(today)) {
-            logger.info("Today is a weekend, skipping reminders");
-            return;
+        // Every node fires this job; the lease ledger makes sure each shard of a tick is only worked once
+        Instant runSlot = currentRunSlot();
+        reminderLeaseService.openRun(runSlot);
+        processClaimableShards(runSlot);
+    }
+    
+    // Picks up shards left behind by a node that died or stalled mid-run
+    @Scheduled(fixedDelayString = "${reminder.cluster.recovery-interval-ms:60000}")
+    public void resumeAbandonedShards() {
+        Instant runSlot = currentRunSlot();
+        if (reminderLeaseService.hasClaimableShards(runSlot)) {
+            processClaimableShards(runSlot);
         }
+    }
+    
+    // Aligned to the epoch so every node maps the same tick to the same slot
+    private Instant currentRunSlot() {
+        long now = System.currentTimeMillis();
+        return Instant.ofEpochMilli(now - now % releaseIntervalMs);
+    }
+    
+    private void processClaimableShards(Instant runSlot) {
+        Integer shard;
+        while ((shard = reminderLeaseService.claimNextShard(runSlot)) != null) {
+            if (processShard(runSlot, shard)) {
+                reminderLeaseService.completeShard(runSlot, shard);
+            }
+        }
+    }
+    
+    private boolean processShard(Instant runSlot, int shard) {
+        // The wheel only hands out beers whose release time has come; no scan of older reminders
+        long startNanos = System.nanoTime();
+        List<ScheduledReminder> due = reminderWheelService.drainDue(shard, Instant.now());
+        Instant lastRenewal = Instant.now();
+        Instant lastSentAt = null;
         
-        List<Beer> beersNeedingReminders = beerRepository.findBeersNeedingReminders(today);
-        logger.info("Found {} beers needing reminders", beersNeedingReminders.size());
-        
-        for (Beer beer : beersNeedingReminders) {
-            User user = beer.getUser();
-            
-            // Only send a max of 5 reminders per beer
-            if (beer.getReminderCount() < 5) {
-                boolean notificationSent = false;
-                
-                // Try push notification first
-                if (pushNotificationEnabled && user.getDeviceToken() != null && !user.getDeviceToken().isEmpty()) {
-                    notificationSent = sendPushNotification(beer, user);
-                }
-                
-                // Fall back to email if push notification fails or is disabled
-                if (!notificationSent && user.getEmail() != null && !user.getEmail().isEmpty()) {
-                    sendEmailNotification(beer, user);
-                    notificationSent = true;
+        for (int from = 0; from < due.size(); from += batchSize) {
+            if (reminderLeaseService.isLeaseExpiring(lastRenewal)) {
+                if (!reminderLeaseService.renewLease(runSlot, shard)) {
+                    logger.warn("Lost lease on reminder shard {}, leaving it to another node", shard);
+                    reminderWheelService.requeue(shard, due.subList(from, due.size()));
+                    return false;
                 }
-                
-                if (notificationSent) {
-                    beer.setReminderSent(true);
-                    beer.setReminderCount(beer.getReminderCount() + 1);
-                    beerRepository.save(beer);
-                    logger.info("Sent reminder for beer: {} (count: {})", beer.getProductName(), beer.getReminderCount());
+                lastRenewal = Instant.now();
+            }
+            
+            List<ScheduledReminder> chunk = due.subList(from, Math.min(from + batchSize, due.size()));
+            // Each database shard claims, sends and records only its own beers, all shards of the chunk at once
+            Map<String, List<ScheduledReminder>> byDatabaseShard = chunk.stream().collect(Collectors.groupingBy(
+                    ScheduledReminder::getDatabaseShard, LinkedHashMap::new, Collectors.toList()));
+            Map<String, ShardBatch> sent = userShardRouter.fanOut(byDatabaseShard.keySet(),
+                    databaseShard -> sendBatch(shard, byDatabaseShard.get(databaseShard)));
+            for (ShardBatch shardBatch : sent.values()) {
+                rescheduleAfterSend(shardBatch.beers, shardBatch.reminded);
+                if (!shardBatch.reminded.isEmpty()) {
+                    lastSentAt = Instant.now();
                 }
             }
         }
+        
+        reminderMetrics.recordShard(runSlot, startNanos, lastSentAt);
+        
+        if (!due.isEmpty()) {
+            logger.info("Processed {} due reminders in shard {}", due.size(), shard);
+        }
+        return true;
     }
     
-    private boolean sendPushNotification(Beer beer, User user) {
-        try {
-            String deviceToken = user.getDeviceToken();
-            String title = "Beer Expiry Alert";
-            String body = formatReminderMessage(beer);
-            
-            String jsonPayload = String.format(
-                    "{"
-                    + "\"to\":\"%s\","
-                    + "\"notification\":{"
-                    + "\"title\":\"%s\","
-                    + "\"body\":\"%s\","
-                    + "\"sound\":\"default\""
-                    + "},"
-                    + "\"data\":{"
-                    + "\"beerId\":\"%s\","
-                    + "\"click_action\":\"FLUTTER_NOTIFICATION_CLICK\""
-                    + "}"
-                    + "}",
-                    deviceToken, title, body, beer.getId());
-            
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create("https://fcm.googleapis.com/fcm/send"))
-                    .header("Content-Type", "application/json")
-                    .header("Authorization", "key=" + firebaseApiKey)
-                    .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
-                    .build();
-            
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    // Claims the due beers in one short transaction, sends without holding a connection, then records the
+    // outcome in a second one. The claim keeps other nodes from sending the same beers meanwhile, even when
+    // a slow shard runs into the next tick and its reminder shard is leased again.
+    private ShardBatch sendBatch(int shard, List<ScheduledReminder> chunk) {
+        List<Beer> batch = transactionTemplate.execute(status -> claimDue(shard, chunk));
+        if (batch.isEmpty()) {
+            return new ShardBatch(batch, Set.of());
+        }
+        SendOutcome outcome = sendReminders(batch);
+        transactionTemplate.executeWithoutResult(status -> recordOutcome(batch, outcome));
+        return new ShardBatch(batch, outcome.remindedIds);
+    }
+    
+    private List<Beer> claimDue(int shard, List<ScheduledReminder> chunk) {
+        List<BeerKey> keys = chunk.stream().map(ScheduledReminder::getBeer).collect(Collectors.toList());
+        List<BeerKey> claimed = beerReminderJdbcRepository.claim(keys, claimTimeoutMs);
+        if (claimed.size() < keys.size()) {
+            // Beers another node is sending come back once its claim would have timed out; by then a
+            // successful send has resynced them with their next release
+            List<BeerKey> unclaimed = new ArrayList<>(keys);
+            unclaimed.removeAll(new HashSet<>(claimed));
+            Set<BeerKey> claimedElsewhere = new HashSet<>(beerReminderJdbcRepository.findClaimed(unclaimed));
+            reminderWheelService.requeue(shard, chunk.stream()
+                    .filter(reminder -> claimedElsewhere.contains(reminder.getBeer()))
+                    .collect(Collectors.toList()), Instant.now().plusMillis(claimTimeoutMs));
+        }
+        if (claimed.isEmpty()) {
+            return List.of();
+        }
+        
+        // Read after claiming: the claim waited for any send being recorded, so these are the current rows.
+        // Wheel entries may be stale, so re-check them before sending.
+        List<Beer> batch = new ArrayList<>();
+        List<BeerKey> notDue = new ArrayList<>();
+        Instant now = Instant.now();
+        Set<UUID> ids = claimed.stream().map(BeerKey::getId).collect(Collectors.toSet());
+        Set<LocalDate> expiryDates = claimed.stream().map(BeerKey::getExpiryDate).collect(Collectors.toSet());
+        for (Beer beer : beerRepository.findAllWithUserByIdInAndExpiryDateIn(ids, expiryDates)) {
+            if (releasePolicy.isDue(beer, now)) {
+                batch.add(beer);
+            } else {
+                notDue.add(BeerKey.of(beer));
+                reminderWheelService.schedule(beer);
+            }
+        }
+        beerReminderJdbcRepository.releaseClaims(notDue);
+        return batch;
+    }
+    
+    private void recordOutcome(List<Beer> batch, SendOutcome outcome) {
+        // Stop paying for sends to devices the provider has dropped
+        if (!outcome.unregisteredTokens.isEmpty()) {
+            int pruned = userDeviceRepository.deleteByTokenIn(outcome.unregisteredTokens);
+            reminderMetrics.recordPrunedDevices(pruned);
+            logger.info("Pruned {} unregistered device tokens", pruned);
+        }
+        
+        // One set-based UPDATE per chunk instead of a dirty-checked save per beer
+        Map<UUID, BeerKey> keys = batch.stream().collect(Collectors.toMap(Beer::getId, BeerKey::of));
+        beerReminderJdbcRepository.markReminded(outcome.remindedIds.stream().map(keys::get)
+                .collect(Collectors.toList()), releasePolicy.getDefaultTimeZone());
+        beerReminderJdbcRepository.recordFailures(outcome.failedIds.stream().map(keys::get)
+                .collect(Collectors.toList()));
+        beerReminderJdbcRepository.releaseClaims(new ArrayList<>(keys.values()));
+    }
+    
+    // The bulk update bypassed these detached entities, so bring them up to date before computing the next release
+    private void rescheduleAfterSend(List<Beer> batch, Set<UUID> reminded) {
+        Instant now = Instant.now();
+        for (Beer beer : batch) {
+            if (reminded.contains(beer.getId())) {
+                beer.setReminderSent(true);
+                beer.setReminderCount(beer.getReminderCount() + 1);
+                beer.setLastReminderDate(releasePolicy.localDate(beer.getUser(), now));
+                reminderWheelService.schedule(beer);
+            } else {
+                reminderWheelService.schedule(beer, now.plusMillis(retryDelayMs));
+            }
+        }
+    }
+    
+    private SendOutcome sendReminders(List<Beer> batch) {
+        // Dispatch pushes for the whole batch first so they run concurrently under the client's limit
+        Map<UUID, List<String>> deviceTokens = loadDeviceTokens(batch);
+        Map<Beer, CompletableFuture<PushResult>> pushes = new LinkedHashMap<>();
+        for (Beer beer : batch) {
+            // Only send a max of 5 reminders per beer
+            if (beer.getReminderCount() < 5) {
+                User user = beer.getUser();
+                List<String> tokens = deviceTokens.getOrDefault(user.getId(), Collections.emptyList());
+                boolean canPush = pushNotificationEnabled && pushNotificationClient.isAvailable() && !tokens.isEmpty();
+                pushes.put(beer, canPush
+                        ? sendPushNotification(beer, user, tokens)
+                        : CompletableFuture.completedFuture(PushResult.failed()));
+            }
+        }
+        
+        List<UUID> remindedIds = new ArrayList<>();
+        List<UUID> failedIds = new ArrayList<>();
+        Map<User, List<Beer>> emailFallbacks = new LinkedHashMap<>();
+        Set<UUID> pushFailedIds = new HashSet<>();
+        int pushed = 0;
+        int noChannel = 0;
+        Set<String> unregisteredTokens = new HashSet<>();
+        for (Map.Entry<Beer, CompletableFuture<PushResult>> entry : pushes.entrySet()) {
+            Beer beer = entry.getKey();
+            User user = beer.getUser();
             
-            boolean success = response.statusCode() == 200;
-            if (!success) {
-                logger.error("Failed to send push notification. Status: {}, Response: {}", 
-                        response.statusCode(), response.body());
+            PushResult result = entry.getValue().join();
+            unregisteredTokens.addAll(result.getUnregisteredTokens());
+            if (result.isDelivered()) {
+                remindedIds.add(beer.getId());
+                pushed++;
+                continue;
+            }
+            if (deviceTokens.containsKey(user.getId())) {
+                pushFailedIds.add(beer.getId());
             }
             
-            return success;
-        } catch (IOException | InterruptedException e) {
-            logger.error("Error sending push notification", e);
-            return false;
+            if (user.getEmail() != null && !user.getEmail().isEmpty()) {
+                // Fall back to email if push notification fails, is disabled or the circuit is open
+                emailFallbacks.computeIfAbsent(user, u -> new ArrayList<>()).add(beer);
+            } else {
+                failedIds.add(beer.getId());
+                if (!pushFailedIds.contains(beer.getId())) {
+                    noChannel++;
+                }
+            }
         }
+        
+        // One email per user: a single reminder, or a digest when several of their beers are due together
+        for (Map.Entry<User, List<Beer>> entry : emailFallbacks.entrySet()) {
+            List<UUID> beerIds = entry.getValue().stream().map(Beer::getId).collect(Collectors.toList());
+            if (sendEmailNotification(entry.getKey(), entry.getValue())) {
+                remindedIds.addAll(beerIds);
+                int fallbacks = (int) beerIds.stream().filter(pushFailedIds::contains).count();
+                reminderMetrics.recordOutcome(ReminderMetrics.Outcome.EMAIL_FALLBACK_SENT, fallbacks);
+                reminderMetrics.recordOutcome(ReminderMetrics.Outcome.EMAIL_SENT, beerIds.size() - fallbacks);
+            } else {
+                failedIds.addAll(beerIds);
+            }
+        }
+        reminderMetrics.recordOutcome(ReminderMetrics.Outcome.PUSH_SENT, pushed);
+        reminderMetrics.recordOutcome(ReminderMetrics.Outcome.NO_CHANNEL, noChannel);
+        reminderMetrics.recordOutcome(ReminderMetrics.Outcome.FAILED, failedIds.size() - noChannel);
+        
+        logger.info("Sent {} reminders, {} failed", remindedIds.size(), failedIds.size());
+        return new SendOutcome(new HashSet<>(remindedIds), failedIds, unregisteredTokens);
     }
     
-    private void sendEmailNotification(Beer beer, User user) {
+    // All device tokens of the batch's users in one query
+    private Map<UUID, List<String>> loadDeviceTokens(List<Beer> batch) {
+        Set<UUID> userIds = batch.stream().map(beer -> beer.getUser().getId()).collect(Collectors.toSet());
+        Map<UUID, List<String>> tokens = new HashMap<>();
+        if (!pushNotificationEnabled || userIds.isEmpty()) {
+            return tokens;
+        }
+        for (Object[] row : userDeviceRepository.findTokensByUserIdIn(userIds)) {
+            tokens.computeIfAbsent((UUID) row[0], id -> new ArrayList<>()).add((String) row[1]);
+        }
+        return tokens;
+    }
+    
+    private CompletableFuture<PushResult> sendPushNotification(Beer beer, User user, List<String> tokens) {
+        LocalDate today = releasePolicy.localDate(user, Instant.now());
+        String jsonPayload = templateEngine.renderPushPayload(beer, tokens, today, templateEngine.localeOf(user));
+        long startNanos = System.nanoTime();
+        return pushNotificationClient.send(jsonPayload, tokens)
+                .whenComplete((sent, error) -> reminderMetrics.recordSend(ReminderMetrics.CHANNEL_PUSH, startNanos));
+    }
+    
+    private boolean sendEmailNotification(User user, List<Beer> beers) {
         try {
+            Locale locale = templateEngine.localeOf(user);
+            LocalDate today = releasePolicy.localDate(user, Instant.now());
+            
             SimpleMailMessage message = new SimpleMailMessage();
             message.setTo(user.getEmail());
-            message.setSubject("Beer Expiry Reminder");
-            message.setText(formatReminderMessage(beer));
+            if (beers.size() == 1) {
+                message.setSubject(templateEngine.renderSubject(locale));
+                message.setText(templateEngine.renderReminder(beers.get(0), today, locale));
+            } else {
+                message.setSubject(templateEngine.renderDigestSubject(beers.size(), locale));
+                message.setText(templateEngine.renderDigest(beers, today, locale));
+            }
             
+            long startNanos = System.nanoTime();
             emailSender.send(message);
+            reminderMetrics.recordSend(ReminderMetrics.CHANNEL_EMAIL, startNanos);
             logger.info("Email notification sent to: {}", user.getEmail());
+            return true;
         } catch (Exception e) {
             logger.error("Failed to send email notification", e);
+            return false;
         }
     }
     
-    private String formatReminderMessage(Beer beer) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMMM d, yyyy");
-        return String.format("Reminder: %s %s will expire on %s (in %d days). Please check your inventory.",
-                beer.getBrandName(), beer.getProductName(),
-                beer.getExpiryDate().format(formatter),
-                LocalDate.now().until(beer.getExpiryDate()).getDays());
+    private static final class ShardBatch {
+        private final List<Beer> beers;
+        private final Set<UUID> reminded;
+        
+        private ShardBatch(List<Beer> beers, Set<UUID> reminded) {
+            this.beers = beers;
+            this.reminded = reminded;
+        }
     }
     
-    private boolean isWeekend(LocalDate date) {
-        DayOfWeek day = date.getDayOfWeek();
-        return day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY;
+    private static final class SendOutcome {
+        private final Set<UUID> remindedIds;
+        private final List<UUID> failedIds;
+        private final Set<String> unregisteredTokens;
+        
+        private SendOutcome(Set<UUID> remindedIds, List<UUID> failedIds, Set<String> unregisteredTokens) {
+            this.remindedIds = remindedIds;
+            this.failedIds = failedIds;
+            this.unregisteredTokens = unregisteredTokens;
+        }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,285 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.model.User;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Renders reminder texts and push payloads from the templates in {@code templates/notifications*.properties}.
+ * Each locale's templates and date formatter are compiled once and cached; rendering appends into a
+ * per-thread buffer, JSON-escaping values that go into push payloads.
+ */
+@Component
+public class NotificationTemplateEngine {
+    
+    private static final String BUNDLE_NAME = "templates.notifications";
+    
+    // No fallback to the JVM default locale: unknown locales get the base bundle
+    private static final ResourceBundle.Control NO_FALLBACK =
+            ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_PROPERTIES);
+    
+    // The language of the base bundle, notifications.properties
+    private static final Locale BASE_LOCALE = Locale.ENGLISH;
+    
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    // Larger buffers (e.g. after a big digest) are dropped rather than kept per thread
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+    
+    @Value("${notification.default-locale:en}")
+    private String defaultLocaleTag;
+    
+    private Locale defaultLocale;
+    
+    // Keyed by the locale of the bundle a user's locale resolves to, so there is one entry per template file
+    // however many distinct locale tags users have
+    private final Map<Locale, LocaleTemplates> templatesByLocale = new ConcurrentHashMap<>();
+    
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(512));
+    
+    @PostConstruct
+    void init() {
+        defaultLocale = Locale.forLanguageTag(defaultLocaleTag);
+        // Fail at startup rather than on the first reminder if the base templates are broken
+        templatesFor(defaultLocale);
+    }
+    
+    public Locale localeOf(User user) {
+        return user.getLocale() != null ? Locale.forLanguageTag(user.getLocale()) : defaultLocale;
+    }
+    
+    public String renderSubject(Locale locale) {
+        return templatesFor(locale).subject.toText();
+    }
+    
+    public String renderReminder(Beer beer, LocalDate today, Locale locale) {
+        LocaleTemplates templates = templatesFor(locale);
+        StringBuilder out = buffer();
+        templates.body.render(out, beer, today, 0, templates.dateFormatter, false);
+        return release(out);
+    }
+    
+    public String renderDigestSubject(int count, Locale locale) {
+        LocaleTemplates templates = templatesFor(locale);
+        StringBuilder out = buffer();
+        templates.digestSubject.render(out, null, null, count, templates.dateFormatter, false);
+        return release(out);
+    }
+    
+    public String renderDigest(List<Beer> beers, LocalDate today, Locale locale) {
+        LocaleTemplates templates = templatesFor(locale);
+        StringBuilder out = buffer();
+        templates.digestHeader.render(out, null, today, beers.size(), templates.dateFormatter, false);
+        for (Beer beer : beers) {
+            templates.digestLine.render(out, beer, today, beers.size(), templates.dateFormatter, false);
+        }
+        templates.digestFooter.render(out, null, today, beers.size(), templates.dateFormatter, false);
+        return release(out);
+    }
+    
+    // One multicast payload for all of the user's devices
+    public String renderPushPayload(Beer beer, List<String> deviceTokens, LocalDate today, Locale locale) {
+        LocaleTemplates templates = templatesFor(locale);
+        StringBuilder out = buffer();
+        out.append("{\"registration_ids\":[");
+        for (int i = 0; i < deviceTokens.size(); i++) {
+            out.append(i == 0 ? "\"" : ",\"");
+            appendJsonEscaped(out, deviceTokens.get(i));
+            out.append('"');
+        }
+        out.append("],\"notification\":{\"title\":\"");
+        templates.title.render(out, beer, today, 0, templates.dateFormatter, true);
+        out.append("\",\"body\":\"");
+        templates.body.render(out, beer, today, 0, templates.dateFormatter, true);
+        out.append("\",\"sound\":\"default\"},\"data\":{\"beerId\":\"")
+                .append(beer.getId())
+                .append("\",\"click_action\":\"FLUTTER_NOTIFICATION_CLICK\"}}");
+        return release(out);
+    }
+    
+    private LocaleTemplates templatesFor(Locale locale) {
+        LocaleTemplates templates = templatesByLocale.get(locale);
+        if (templates != null) {
+            return templates;
+        }
+        // Other locales (de-AT, fr, ...) are looked up through ResourceBundle, which caches the resolution
+        ResourceBundle bundle = ResourceBundle.getBundle(BUNDLE_NAME, locale, NO_FALLBACK);
+        Locale resolved = bundle.getLocale().equals(Locale.ROOT) ? BASE_LOCALE : bundle.getLocale();
+        return templatesByLocale.computeIfAbsent(resolved, key -> new LocaleTemplates(bundle, key));
+    }
+    
+    // Number of compiled template sets
+    int cachedTemplateSets() {
+        return templatesByLocale.size();
+    }
+    
+    private StringBuilder buffer() {
+        StringBuilder out = buffers.get();
+        out.setLength(0);
+        return out;
+    }
+    
+    private String release(StringBuilder out) {
+        String result = out.toString();
+        if (out.capacity() > MAX_RETAINED_BUFFER) {
+            buffers.remove();
+        }
+        return result;
+    }
+    
+    static void appendJsonEscaped(StringBuilder out, CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    // Control characters, plus the JavaScript line separators some push clients choke on
+                    if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                        out.append("\\u").append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+                                .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+    }
+    
+    private static final class LocaleTemplates {
+        private final DateTimeFormatter dateFormatter;
+        private final Template title;
+        private final Template subject;
+        private final Template body;
+        private final Template digestSubject;
+        private final Template digestHeader;
+        private final Template digestLine;
+        private final Template digestFooter;
+        
+        private LocaleTemplates(ResourceBundle bundle, Locale locale) {
+            dateFormatter = DateTimeFormatter.ofPattern(bundle.getString("date.pattern"), locale);
+            title = Template.compile(bundle.getString("reminder.title"));
+            subject = Template.compile(bundle.getString("reminder.subject"));
+            body = Template.compile(bundle.getString("reminder.body"));
+            digestSubject = Template.compile(bundle.getString("digest.subject"));
+            digestHeader = Template.compile(bundle.getString("digest.header"));
+            digestLine = Template.compile(bundle.getString("digest.line"));
+            digestFooter = Template.compile(bundle.getString("digest.footer"));
+        }
+    }
+    
+    private enum Field { BRAND, PRODUCT, EXPIRY_DATE, DAYS, COUNT }
+    
+    // A template split once into literal text and placeholders, so rendering is a single pass of appends
+    private static final class Template {
+        private final String[] literals;
+        private final Field[] fields;
+        
+        private Template(String[] literals, Field[] fields) {
+            this.literals = literals;
+            this.fields = fields;
+        }
+        
+        static Template compile(String source) {
+            List<String> literals = new ArrayList<>();
+            List<Field> fields = new ArrayList<>();
+            int position = 0;
+            while (true) {
+                int open = source.indexOf('{', position);
+                if (open < 0) {
+                    break;
+                }
+                int close = source.indexOf('}', open);
+                if (close < 0) {
+                    throw new IllegalStateException("Unclosed placeholder in notification template: " + source);
+                }
+                literals.add(source.substring(position, open));
+                fields.add(fieldFor(source.substring(open + 1, close), source));
+                position = close + 1;
+            }
+            literals.add(source.substring(position));
+            return new Template(literals.toArray(new String[0]), fields.toArray(new Field[0]));
+        }
+        
+        private static Field fieldFor(String name, String source) {
+            switch (name) {
+                case "brand":
+                    return Field.BRAND;
+                case "product":
+                    return Field.PRODUCT;
+                case "expiryDate":
+                    return Field.EXPIRY_DATE;
+                case "days":
+                    return Field.DAYS;
+                case "count":
+                    return Field.COUNT;
+                default:
+                    throw new IllegalStateException("Unknown placeholder {" + name + "} in notification template: " + source);
+            }
+        }
+        
+        String toText() {
+            StringBuilder out = new StringBuilder();
+            render(out, null, null, 0, null, false);
+            return out.toString();
+        }
+        
+        void render(StringBuilder out, Beer beer, LocalDate today, int count, DateTimeFormatter dateFormatter,
+                    boolean json) {
+            for (int i = 0; i < fields.length; i++) {
+                appendLiteral(out, literals[i], json);
+                switch (fields[i]) {
+                    case BRAND:
+                        appendLiteral(out, beer.getBrandName(), json);
+                        break;
+                    case PRODUCT:
+                        appendLiteral(out, beer.getProductName(), json);
+                        break;
+                    case EXPIRY_DATE:
+                        // Month names can't contain JSON specials, so the formatter writes straight into the buffer
+                        dateFormatter.formatTo(beer.getExpiryDate(), out);
+                        break;
+                    case DAYS:
+                        out.append(ChronoUnit.DAYS.between(today, beer.getExpiryDate()));
+                        break;
+                    case COUNT:
+                        out.append(count);
+                        break;
+                }
+            }
+            appendLiteral(out, literals[fields.length], json);
+        }
+        
+        private static void appendLiteral(StringBuilder out, String value, boolean json) {
+            if (json) {
+                appendJsonEscaped(out, value);
+            } else {
+                out.append(value);
+            }
+        }
+    }
+}
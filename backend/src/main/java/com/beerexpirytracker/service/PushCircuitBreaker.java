@@ -0,0 +1,105 @@
+package com.beerexpirytracker.service;
+
+import java.time.Duration;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Minimal circuit breaker for the push provider. After {@code failureThreshold} consecutive
+ * failures the circuit opens and every call is rejected until {@code openDuration} has passed;
+ * then a single trial call is let through (half-open) and its outcome closes or re-opens it.
+ */
+public class PushCircuitBreaker {
+    
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+    
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final BiConsumer<State, State> transitionListener;
+    private final LongSupplier nanoClock;
+    
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt;
+    private boolean trialInFlight = false;
+    
+    public PushCircuitBreaker(int failureThreshold, Duration openDuration, BiConsumer<State, State> transitionListener) {
+        this(failureThreshold, openDuration, transitionListener, System::nanoTime);
+    }
+    
+    // The clock is only swapped in tests
+    PushCircuitBreaker(int failureThreshold, Duration openDuration, BiConsumer<State, State> transitionListener,
+                       LongSupplier nanoClock) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.transitionListener = transitionListener;
+        this.nanoClock = nanoClock;
+    }
+    
+    // Whether a call made now would be let through, without taking the permission. An open circuit
+    // whose open duration has passed counts as permitted, as the next call becomes the half-open trial.
+    public synchronized boolean isCallPermitted() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                return !trialInFlight;
+            default:
+                return openDurationElapsed();
+        }
+    }
+    
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN && openDurationElapsed()) {
+            transitionTo(State.HALF_OPEN);
+        }
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    // Gives back a permission that ended without reaching the provider
+    public synchronized void releasePermission() {
+        trialInFlight = false;
+    }
+    
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        if (state != State.CLOSED) {
+            transitionTo(State.CLOSED);
+        }
+    }
+    
+    public synchronized void recordFailure() {
+        trialInFlight = false;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            openedAt = nanoClock.getAsLong();
+            transitionTo(State.OPEN);
+        }
+    }
+    
+    public synchronized State getState() {
+        return state;
+    }
+    
+    private boolean openDurationElapsed() {
+        return nanoClock.getAsLong() - openedAt >= openDurationNanos;
+    }
+    
+    private void transitionTo(State next) {
+        State previous = state;
+        state = next;
+        transitionListener.accept(previous, next);
+    }
+}
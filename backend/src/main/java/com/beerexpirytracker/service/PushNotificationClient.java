@@ -0,0 +1,201 @@
+package com.beerexpirytracker.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class PushNotificationClient {
+    
+    private static final Logger logger = LoggerFactory.getLogger(PushNotificationClient.class);
+    
+    // Per-token errors meaning the device is gone for good and should be forgotten
+    private static final Set<String> UNREGISTERED_ERRORS = Set.of("NotRegistered", "InvalidRegistration");
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    // Overridable so a local stub can stand in for FCM
+    @Value("${push.notification.endpoint:https://fcm.googleapis.com/fcm/send}")
+    private String endpoint;
+    
+    @Value("${push.notification.api-key}")
+    private String apiKey;
+    
+    @Value("${push.notification.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+    
+    @Value("${push.notification.request-timeout-ms:5000}")
+    private long requestTimeoutMs;
+    
+    @Value("${push.notification.circuit.failure-threshold:5}")
+    private int failureThreshold;
+    
+    @Value("${push.notification.circuit.open-duration-ms:30000}")
+    private long openDurationMs;
+    
+    @Value("${push.notification.concurrency.min:1}")
+    private int minConcurrency;
+    
+    @Value("${push.notification.concurrency.max:64}")
+    private int maxConcurrency;
+    
+    @Value("${push.notification.concurrency.initial:8}")
+    private int initialConcurrency;
+    
+    @Value("${push.notification.concurrency.latency-target-ms:1000}")
+    private long latencyTargetMs;
+    
+    private URI endpointUri;
+    private HttpClient httpClient;
+    private PushCircuitBreaker circuitBreaker;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    
+    @PostConstruct
+    void init() {
+        endpointUri = URI.create(endpoint);
+        // HTTP/2 lets concurrent sends share one multiplexed connection to the provider
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        circuitBreaker = new PushCircuitBreaker(failureThreshold, Duration.ofMillis(openDurationMs),
+                this::onCircuitTransition);
+        concurrencyLimiter = new AdaptiveConcurrencyLimiter(minConcurrency, maxConcurrency, initialConcurrency,
+                latencyTargetMs, 0.5);
+        
+        Gauge.builder("notification.push.inflight", concurrencyLimiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Push requests currently in flight")
+                .register(meterRegistry);
+        Gauge.builder("notification.push.concurrency.limit", concurrencyLimiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive push concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("notification.push.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("Push circuit state (0 = closed, 1 = open, 2 = half-open)")
+                .register(meterRegistry);
+    }
+    
+    // False while the circuit is open, so callers can go straight to the fallback channel; true again once
+    // the open duration has passed, so the half-open trial send can happen
+    public boolean isAvailable() {
+        return circuitBreaker.isCallPermitted();
+    }
+    
+    // Sends one multicast payload addressed to {@code tokens}, in that order; never completes exceptionally
+    public CompletableFuture<PushResult> send(String jsonPayload, List<String> tokens) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return CompletableFuture.completedFuture(PushResult.failed());
+        }
+        
+        try {
+            // Blocking here is the back-pressure: the caller can't outrun the current limit
+            if (!concurrencyLimiter.tryAcquire(requestTimeoutMs, TimeUnit.MILLISECONDS)) {
+                circuitBreaker.releasePermission();
+                logger.warn("Timed out waiting for a push concurrency permit");
+                return CompletableFuture.completedFuture(PushResult.failed());
+            }
+        } catch (InterruptedException e) {
+            circuitBreaker.releasePermission();
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(PushResult.failed());
+        }
+        
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(endpointUri)
+                .timeout(Duration.ofMillis(requestTimeoutMs))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "key=" + apiKey)
+                .POST(HttpRequest.BodyPublishers.ofString(jsonPayload))
+                .build();
+        
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    long latency = System.nanoTime() - start;
+                    if (error != null) {
+                        logger.error("Error sending push notification", error);
+                        concurrencyLimiter.release(latency, false);
+                        circuitBreaker.recordFailure();
+                        return PushResult.failed();
+                    }
+                    
+                    int status = response.statusCode();
+                    boolean providerFailure = status == 429 || status >= 500;
+                    concurrencyLimiter.release(latency, !providerFailure);
+                    if (providerFailure) {
+                        circuitBreaker.recordFailure();
+                    } else {
+                        circuitBreaker.recordSuccess();
+                    }
+                    
+                    if (status == 404 || status == 410) {
+                        // Single-device send to a token the provider has dropped
+                        return new PushResult(false, tokens.size() == 1 ? tokens : Collections.emptyList());
+                    }
+                    if (status != 200) {
+                        logger.error("Failed to send push notification. Status: {}, Response: {}",
+                                status, response.body());
+                        return PushResult.failed();
+                    }
+                    return parseResults(response.body(), tokens);
+                });
+    }
+    
+    // The provider answers with one result per registration id, in request order
+    private PushResult parseResults(String body, List<String> tokens) {
+        try {
+            JsonNode results = objectMapper.readTree(body).path("results");
+            if (!results.isArray()) {
+                return new PushResult(true, Collections.emptyList());
+            }
+            boolean delivered = false;
+            List<String> unregistered = new ArrayList<>();
+            for (int i = 0; i < results.size() && i < tokens.size(); i++) {
+                JsonNode result = results.get(i);
+                if (result.hasNonNull("message_id")) {
+                    delivered = true;
+                } else if (UNREGISTERED_ERRORS.contains(result.path("error").asText())) {
+                    unregistered.add(tokens.get(i));
+                }
+            }
+            return new PushResult(delivered, unregistered);
+        } catch (JsonProcessingException e) {
+            // A 200 means the provider accepted the request, even if the body is unexpected
+            logger.warn("Unreadable push provider response: {}", body);
+            return new PushResult(true, Collections.emptyList());
+        }
+    }
+    
+    private void onCircuitTransition(PushCircuitBreaker.State from, PushCircuitBreaker.State to) {
+        logger.warn("Push circuit breaker {} -> {}", from, to);
+        Counter.builder("notification.push.circuit.transitions")
+                .tag("from", from.name())
+                .tag("to", to.name())
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,30 @@
+package com.beerexpirytracker.service;
+
+import java.util.Collections;
+import java.util.List;
+
+// Outcome of one multicast push: whether any device got it, and the tokens the provider no longer knows
+public class PushResult {
+    
+    private static final PushResult FAILED = new PushResult(false, Collections.emptyList());
+    
+    private final boolean delivered;
+    private final List<String> unregisteredTokens;
+    
+    public PushResult(boolean delivered, List<String> unregisteredTokens) {
+        this.delivered = delivered;
+        this.unregisteredTokens = unregisteredTokens;
+    }
+    
+    public static PushResult failed() {
+        return FAILED;
+    }
+    
+    public boolean isDelivered() {
+        return delivered;
+    }
+    
+    public List<String> getUnregisteredTokens() {
+        return unregisteredTokens;
+    }
+}
@@ -0,0 +1,65 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.dto.BeerDTO;
+import com.beerexpirytracker.repository.BeerR2dbcRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.UUID;
+
+// The read endpoints of BeerService without holding a request thread while the database works. Writes
+// stay on the JPA path; these reads go to the shard primaries, never to read replicas.
+@Service
+@ConditionalOnProperty(name = "beers.reactive-read.enabled", havingValue = "true")
+public class ReactiveBeerService {
+    
+    @Autowired
+    private BeerR2dbcRepository beerR2dbcRepository;
+    
+    @Autowired
+    private BeerService beerService;
+    
+    public Flux<BeerDTO> getAllBeersByUser(UUID userId, boolean includeArchived) {
+        Flux<BeerDTO> beers = beerR2dbcRepository.findByUserId(userId).map(beerService::convertToDTO);
+        if (!includeArchived) {
+            return beers;
+        }
+        return beers.concatWith(beerR2dbcRepository.findArchivedByUserId(userId)
+                .map(beer -> {
+                    BeerDTO dto = beerService.convertToDTO(beer);
+                    dto.setArchived(true);
+                    return dto;
+                }));
+    }
+    
+    public Flux<BeerDTO> getUpcomingExpiringBeers(UUID userId, int daysAhead) {
+        LocalDate startDate = LocalDate.now();
+        LocalDate endDate = startDate.plusDays(daysAhead);
+        
+        return beerR2dbcRepository.findByUserIdAndExpiryDateBetween(userId, startDate, endDate)
+                .map(beerService::convertToDTO);
+    }
+    
+    public Mono<Map<String, Object>> getExpiryTimelineStats(UUID userId) {
+        return beerR2dbcRepository.countByExpiryDate(userId)
+                .map(counts -> BeerStats.expiryTimeline(counts, LocalDate.now()));
+    }
+    
+    public Mono<Map<String, Long>> getTypeDistributionStats(UUID userId) {
+        return beerR2dbcRepository.countByType(userId).map(BeerStats::typeDistribution);
+    }
+    
+    public Mono<Map<String, Long>> getBrandDistributionStats(UUID userId) {
+        return beerR2dbcRepository.countTopBrands(userId, 10);
+    }
+    
+    public Mono<Map<String, Object>> getStatsSummary(UUID userId) {
+        return Mono.zip(beerR2dbcRepository.countByExpiryDate(userId), beerR2dbcRepository.countByType(userId))
+                .map(counts -> BeerStats.summary(counts.getT1(), counts.getT2(), LocalDate.now()));
+    }
+}
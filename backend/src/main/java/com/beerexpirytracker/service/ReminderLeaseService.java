@@ -0,0 +1,116 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.model.UuidV7;
+import com.beerexpirytracker.repository.ReminderShardLeaseRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Coordinates reminder release runs across application nodes. Each release tick (run slot) is
+ * split into a fixed number of shards recorded in {@code reminder_shard_leases}; a node works on a
+ * shard only while it holds an unexpired lease on it, and a completed shard is never processed again.
+ */
+@Service
+public class ReminderLeaseService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReminderLeaseService.class);
+    
+    @Autowired
+    private ReminderShardLeaseRepository leaseRepository;
+    
+    // Must be identical on every node, otherwise shards overlap
+    @Value("${reminder.cluster.shards:16}")
+    private int shardCount;
+    
+    @Value("${reminder.cluster.lease-seconds:300}")
+    private long leaseSeconds;
+    
+    @Value("${reminder.cluster.node-id:}")
+    private String nodeId;
+    
+    @PostConstruct
+    void init() {
+        if (nodeId == null || nodeId.isBlank()) {
+            // "pid@hostname" is unique per running JVM
+            nodeId = ManagementFactory.getRuntimeMXBean().getName();
+        }
+        logger.info("Reminder scheduling node id: {} ({} shards)", nodeId, shardCount);
+    }
+    
+    public int getShardCount() {
+        return shardCount;
+    }
+    
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void openRun(Instant runSlot) {
+        int created = 0;
+        for (int shard = 0; shard < shardCount; shard++) {
+            created += leaseRepository.insertIfAbsent(UuidV7.generate(), runSlot, shard);
+        }
+        if (created > 0) {
+            logger.info("Opened reminder run {} with {} shards", runSlot, created);
+        }
+    }
+    
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Integer claimNextShard(Instant runSlot) {
+        Instant now = Instant.now();
+        Instant leaseUntil = now.plus(Duration.ofSeconds(leaseSeconds));
+        
+        // Start at a node-specific offset so nodes don't all contend for shard 0
+        int start = Math.floorMod(nodeId.hashCode(), shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            int shard = (start + i) % shardCount;
+            if (leaseRepository.claim(runSlot, shard, nodeId, leaseUntil, now) == 1) {
+                logger.debug("Claimed reminder shard {} for {}", shard, runSlot);
+                return shard;
+            }
+        }
+        return null;
+    }
+    
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean renewLease(Instant runSlot, int shard) {
+        Instant leaseUntil = Instant.now().plus(Duration.ofSeconds(leaseSeconds));
+        return leaseRepository.renew(runSlot, shard, nodeId, leaseUntil) == 1;
+    }
+    
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void completeShard(Instant runSlot, int shard) {
+        if (leaseRepository.complete(runSlot, shard, nodeId, Instant.now()) == 1) {
+            logger.debug("Completed reminder shard {} for {}", shard, runSlot);
+        } else {
+            logger.warn("Lease on reminder shard {} for {} was lost before completion", shard, runSlot);
+        }
+    }
+    
+    // On the primary like the claims themselves; a replica could report shards already taken
+    @Transactional
+    public boolean hasClaimableShards(Instant runSlot) {
+        return leaseRepository.countClaimable(runSlot, Instant.now()) > 0;
+    }
+    
+    // Leases are only needed while their tick is running; keep a couple of days for inspection
+    @Scheduled(cron = "0 30 3 * * ?")
+    @Transactional
+    public void purgeOldLeases() {
+        int deleted = leaseRepository.deleteByRunSlotBefore(Instant.now().minus(Duration.ofDays(2)));
+        logger.info("Purged {} old reminder shard leases", deleted);
+    }
+    
+    public boolean isLeaseExpiring(Instant lastRenewal) {
+        // Renew once a third of the lease has elapsed
+        return Duration.between(lastRenewal, Instant.now()).getSeconds() * 3 >= leaseSeconds;
+    }
+}
@@ -0,0 +1,127 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.repository.BeerRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Meters for the reminder run: send latency per channel, outcomes, the due backlog and scheduler lag
+@Component
+public class ReminderMetrics {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReminderMetrics.class);
+    
+    public static final String CHANNEL_PUSH = "push";
+    public static final String CHANNEL_EMAIL = "email";
+    
+    public enum Outcome { PUSH_SENT, EMAIL_SENT, EMAIL_FALLBACK_SENT, FAILED, NO_CHANNEL }
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Autowired
+    private BeerRepository beerRepository;
+    
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
+    @Value("${reminder.wheel.lookback-days:14}")
+    private int lookbackDays;
+    
+    private Timer pushTimer;
+    private Timer emailTimer;
+    private Timer schedulerLag;
+    private Timer shardDuration;
+    private Counter prunedDevices;
+    
+    private final AtomicLong dueUnsent = new AtomicLong();
+    
+    @PostConstruct
+    void init() {
+        pushTimer = sendTimer(CHANNEL_PUSH);
+        emailTimer = sendTimer(CHANNEL_EMAIL);
+        schedulerLag = Timer.builder("notification.reminder.scheduler.lag")
+                .description("Time from a release tick's scheduled fire to the last reminder it sent")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        shardDuration = Timer.builder("notification.reminder.shard.duration")
+                .description("Time to work through one claimed reminder shard")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("notification.reminders.due", dueUnsent, AtomicLong::get)
+                .description("Reminders that are due today but have not been sent yet")
+                .register(meterRegistry);
+        prunedDevices = Counter.builder("notification.push.devices.pruned")
+                .description("Device tokens removed after the provider reported them unregistered")
+                .register(meterRegistry);
+        for (Outcome outcome : Outcome.values()) {
+            outcomeCounter(outcome);
+        }
+    }
+    
+    private Timer sendTimer(String channel) {
+        return Timer.builder("notification.send")
+                .description("Latency of a single reminder send")
+                .tag("channel", channel)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+    
+    private Counter outcomeCounter(Outcome outcome) {
+        return Counter.builder("notification.reminders")
+                .description("Reminders handled, by outcome")
+                .tag("outcome", outcome.name().toLowerCase())
+                .register(meterRegistry);
+    }
+    
+    public void recordSend(String channel, long startNanos) {
+        Timer timer = CHANNEL_PUSH.equals(channel) ? pushTimer : emailTimer;
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    public void recordOutcome(Outcome outcome, int count) {
+        if (count > 0) {
+            outcomeCounter(outcome).increment(count);
+        }
+    }
+    
+    public void recordPrunedDevices(int count) {
+        prunedDevices.increment(count);
+    }
+    
+    public void recordShard(Instant runSlot, long startNanos, Instant lastSentAt) {
+        shardDuration.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (lastSentAt != null) {
+            schedulerLag.record(Duration.between(runSlot, lastSentAt));
+        }
+    }
+    
+    // A count query per scrape would be too heavy, so the backlog gauge is refreshed on its own schedule
+    @Scheduled(fixedDelayString = "${metrics.reminder.backlog-refresh-ms:60000}")
+    public void refreshDueBacklog() {
+        try {
+            LocalDate today = LocalDate.now();
+            LocalDate from = today.minusDays(lookbackDays);
+            dueUnsent.set(userShardRouter.fanOut(shard -> beerRepository.countDueUnsent(from, today))
+                    .values().stream().mapToLong(Long::longValue).sum());
+        } catch (Exception e) {
+            logger.warn("Failed to refresh due reminder backlog", e);
+        }
+    }
+}
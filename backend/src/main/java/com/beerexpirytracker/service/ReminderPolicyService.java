@@ -0,0 +1,138 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.model.ReminderLeadTime;
+import com.beerexpirytracker.model.UuidV7;
+import com.beerexpirytracker.repository.BeerReminderJdbcRepository;
+import com.beerexpirytracker.repository.ReminderLeadTimeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Reminder lead times: global default with per-type and per-user overrides
+@Service
+public class ReminderPolicyService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReminderPolicyService.class);
+    
+    private static final int MAX_LEAD_DAYS = 365;
+    
+    @Autowired
+    private ReminderLeadTimeRepository reminderLeadTimeRepository;
+    
+    @Autowired
+    private BeerReminderJdbcRepository beerReminderJdbcRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
+    // Used when no policy row applies, including before any global row has been stored
+    @Value("${reminder.default-lead-days:45}")
+    private int defaultLeadDays;
+    
+    @Value("${reminder.recompute.chunk-size:5000}")
+    private int recomputeChunkSize;
+    
+    public int getDefaultLeadDays() {
+        return defaultLeadDays;
+    }
+    
+    public int leadDaysFor(UUID userId, String beerType) {
+        String type = normalizeType(beerType);
+        List<ReminderLeadTime> applicable = type != null
+                ? reminderLeadTimeRepository.findApplicable(userId, type)
+                : reminderLeadTimeRepository.findApplicableUntyped(userId);
+        return applicable.stream()
+                .max(Comparator.comparingInt(this::specificity))
+                .map(ReminderLeadTime::getLeadDays)
+                .orElse(defaultLeadDays);
+    }
+    
+    public List<ReminderLeadTime> getPolicies(UUID userId) {
+        return reminderLeadTimeRepository.findVisibleTo(userId);
+    }
+    
+    // Stores (or with leadDays == null removes) the policy for one scope, then recomputes the reminder
+    // dates of the beers it covers. A null userId is a global policy, a null type covers every type.
+    public Map<String, Object> setLeadDays(UUID userId, String beerType, Integer leadDays) {
+        if (leadDays != null && (leadDays < 0 || leadDays > MAX_LEAD_DAYS)) {
+            throw new IllegalArgumentException("Lead days must be between 0 and " + MAX_LEAD_DAYS);
+        }
+        String type = normalizeType(beerType);
+        if (userId != null) {
+            return storeAndRecompute(userId, type, leadDays);
+        }
+        
+        // Every shard keeps its own copy of the global policies, which its recompute reads
+        Map<String, Map<String, Object>> reports = userShardRouter.fanOut(shard ->
+                storeAndRecompute(null, type, leadDays));
+        Map<String, Object> report = new HashMap<>();
+        report.put("rowsChanged", reports.values().stream().mapToInt(r -> (Integer) r.get("rowsChanged")).sum());
+        report.put("chunks", reports.values().stream().mapToInt(r -> (Integer) r.get("chunks")).sum());
+        report.put("elapsedMs", reports.values().stream().mapToLong(r -> (Long) r.get("elapsedMs")).max().orElse(0));
+        return report;
+    }
+    
+    private Map<String, Object> storeAndRecompute(UUID userId, String type, Integer leadDays) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (leadDays == null) {
+                reminderLeadTimeRepository.deleteByScope(userId, type);
+            } else {
+                reminderLeadTimeRepository.upsert(UuidV7.generate(), userId, type, leadDays, Instant.now());
+            }
+        });
+        
+        return recompute(userId, type);
+    }
+    
+    // Chunked, set-based recompute: each chunk is one UPDATE committed on its own, so locks stay short
+    // and a global change never holds millions of rows at once. Only rows whose date changes are written.
+    public Map<String, Object> recompute(UUID userId, String beerType) {
+        long start = System.nanoTime();
+        UUID afterId = new UUID(0L, 0L);
+        int rowsChanged = 0;
+        int chunks = 0;
+        
+        UUID upToId;
+        while ((upToId = beerReminderJdbcRepository.nextRecomputeChunkEnd(userId, beerType, afterId,
+                recomputeChunkSize)) != null) {
+            rowsChanged += beerReminderJdbcRepository.recomputeReminderDates(userId, beerType, afterId, upToId,
+                    defaultLeadDays);
+            afterId = upToId;
+            chunks++;
+        }
+        
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        logger.info("Recomputed reminder dates (user {}, type {}): {} rows changed in {} chunks, {} ms",
+                userId, beerType, rowsChanged, chunks, elapsedMs);
+        
+        Map<String, Object> report = new HashMap<>();
+        report.put("rowsChanged", rowsChanged);
+        report.put("chunks", chunks);
+        report.put("elapsedMs", elapsedMs);
+        return report;
+    }
+    
+    // User-specific beats type-specific, so a user's blanket override wins over a global type rule
+    private int specificity(ReminderLeadTime policy) {
+        return (policy.getUserId() != null ? 2 : 0) + (policy.getBeerType() != null ? 1 : 0);
+    }
+    
+    private String normalizeType(String beerType) {
+        return beerType == null || beerType.isBlank() ? null : beerType.trim().toLowerCase(Locale.ROOT);
+    }
+}
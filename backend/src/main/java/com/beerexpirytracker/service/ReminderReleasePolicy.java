@@ -0,0 +1,116 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.model.User;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+// Decides when a beer's next reminder is released, in its owner's time zone and delivery window
+@Component
+public class ReminderReleasePolicy {
+    
+    @Value("${reminder.release.jitter-seconds:3600}")
+    private int jitterSeconds;
+    
+    @Value("${reminder.skip-weekends:true}")
+    private boolean skipWeekends;
+    
+    // Used for users who haven't set their own zone or window
+    @Value("${reminder.default-time-zone:}")
+    private String defaultTimeZone;
+    
+    @Value("${reminder.default-window-start:09:00}")
+    private String defaultWindowStartValue;
+    
+    @Value("${reminder.default-window-end:17:00}")
+    private String defaultWindowEndValue;
+    
+    private ZoneId defaultZone;
+    private LocalTime defaultWindowStart;
+    private LocalTime defaultWindowEnd;
+    
+    @PostConstruct
+    void init() {
+        if (defaultTimeZone == null || defaultTimeZone.isBlank()) {
+            defaultTimeZone = ZoneId.systemDefault().getId();
+        }
+        defaultZone = ZoneId.of(defaultTimeZone);
+        defaultWindowStart = LocalTime.parse(defaultWindowStartValue);
+        defaultWindowEnd = LocalTime.parse(defaultWindowEndValue);
+    }
+    
+    public String getDefaultTimeZone() {
+        return defaultTimeZone;
+    }
+    
+    public ZoneId zoneOf(User user) {
+        return user.getTimeZone() != null ? ZoneId.of(user.getTimeZone()) : defaultZone;
+    }
+    
+    public LocalDate localDate(User user, Instant at) {
+        return at.atZone(zoneOf(user)).toLocalDate();
+    }
+    
+    public boolean isDue(Beer beer, Instant now) {
+        Instant release = nextRelease(beer, now);
+        return release != null && !release.isAfter(now);
+    }
+    
+    // Earliest instant at or after notBefore when the beer's next reminder may go out, or null if none is left
+    public Instant nextRelease(Beer beer, Instant notBefore) {
+        if (beer.getReminderCount() >= 5) {
+            return null;
+        }
+        
+        User user = beer.getUser();
+        ZoneId zone = zoneOf(user);
+        LocalTime windowStart = user.getReminderWindowStart() != null ? user.getReminderWindowStart() : defaultWindowStart;
+        LocalTime windowEnd = user.getReminderWindowEnd() != null ? user.getReminderWindowEnd() : defaultWindowEnd;
+        
+        // A stable per-user offset into the window spreads release times out instead of firing all at window start
+        long windowSeconds = Duration.between(windowStart, windowEnd).getSeconds();
+        long jitterSpan = Math.max(1, Math.min(jitterSeconds, windowSeconds));
+        LocalTime releaseTime = windowStart.plusSeconds(Math.floorMod((long) user.getId().hashCode(), jitterSpan));
+        
+        ZonedDateTime from = notBefore.atZone(zone);
+        LocalDate date = from.toLocalDate();
+        if (beer.getReminderDate().isAfter(date)) {
+            date = beer.getReminderDate();
+        }
+        if (beer.getLastReminderDate() != null && !beer.getLastReminderDate().isBefore(date)) {
+            date = beer.getLastReminderDate().plusDays(1);
+        }
+        
+        while (date.isBefore(beer.getExpiryDate())) {
+            if (skipWeekends && isWeekend(date)) {
+                date = date.plusDays(1);
+                continue;
+            }
+            
+            ZonedDateTime release = ZonedDateTime.of(date, releaseTime, zone);
+            if (!release.isBefore(from)) {
+                return release.toInstant();
+            }
+            // Past today's release point but the window is still open: send right away
+            if (date.equals(from.toLocalDate()) && from.toLocalTime().isBefore(windowEnd)) {
+                return notBefore;
+            }
+            date = date.plusDays(1);
+        }
+        return null;
+    }
+    
+    private boolean isWeekend(LocalDate date) {
+        DayOfWeek day = date.getDayOfWeek();
+        return day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY;
+    }
+}
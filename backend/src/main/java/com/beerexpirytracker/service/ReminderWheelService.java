@@ -0,0 +1,224 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.model.BeerKey;
+import com.beerexpirytracker.repository.BeerRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory schedule of upcoming reminder releases, one timing wheel per reminder shard. Only a rolling
+ * horizon is held: it is rebuilt from a bounded reminder_date range on startup and extended daily, and
+ * kept current by local writes plus a sync of rows changed on other nodes. The database stays the source
+ * of truth; whatever the wheel hands out is re-checked before sending. Every database shard is loaded
+ * and synced in parallel, each against its own watermark.
+ */
+@Service
+public class ReminderWheelService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ReminderWheelService.class);
+    
+    @Autowired
+    private BeerRepository beerRepository;
+    
+    @Autowired
+    private ReminderReleasePolicy releasePolicy;
+    
+    @Autowired
+    private ReminderLeaseService reminderLeaseService;
+    
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${reminder.wheel.tick-ms:60000}")
+    private long tickMs;
+    
+    @Value("${reminder.wheel.wheel-size:60}")
+    private int wheelSize;
+    
+    @Value("${reminder.wheel.levels:2}")
+    private int levels;
+    
+    @Value("${reminder.wheel.horizon-hours:48}")
+    private long horizonHours;
+    
+    // Beers whose reminder date is older than this are not reloaded after a restart
+    @Value("${reminder.wheel.lookback-days:14}")
+    private int lookbackDays;
+    
+    @Value("${reminder.batch-size:500}")
+    private int batchSize;
+    
+    private List<HierarchicalTimingWheel<ScheduledReminder>> wheels;
+    
+    // Current entry per beer; wheel entries that don't match it (an older deadline or expiry date) are stale
+    // and dropped when they fire
+    private final Map<UUID, ScheduledReminder> scheduled = new ConcurrentHashMap<>();
+    
+    private final Map<String, Instant> lastSync = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    void init() {
+        long now = System.currentTimeMillis();
+        wheels = new ArrayList<>();
+        for (int shard = 0; shard < reminderLeaseService.getShardCount(); shard++) {
+            wheels.add(new HierarchicalTimingWheel<>(tickMs, wheelSize, levels, now));
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Instant now = Instant.now();
+        userShardRouter.getShards().forEach(shard -> lastSync.put(shard, now));
+        int loaded = loadHorizon();
+        logger.info("Rebuilt reminder wheel from {} candidate beers, {} reminders scheduled", loaded, size());
+    }
+    
+    // Extends the horizon by the new day's reminder dates
+    @Scheduled(cron = "${reminder.wheel.refresh-cron:0 15 0 * * ?}")
+    public void extendHorizon() {
+        int loaded = loadHorizon();
+        logger.info("Extended reminder wheel horizon from {} candidate beers, {} reminders scheduled", loaded, size());
+    }
+    
+    // Picks up beers written on other nodes (and bulk reminder updates) since the last sync. Not read-only,
+    // so it stays on the primary: a lagging replica could hide changes from before the new watermark.
+    @Scheduled(fixedDelayString = "${reminder.wheel.sync-interval-ms:60000}")
+    public void syncChanges() {
+        if (lastSync.isEmpty()) {
+            return;
+        }
+        userShardRouter.fanOut(this::syncShardChanges);
+    }
+    
+    private int syncShardChanges(String shard) {
+        Instant since = lastSync.get(shard);
+        Instant syncStart = Instant.now();
+        // Overlap a little so clock skew between nodes and the database can't drop a change
+        List<Beer> changed = transactionTemplate.execute(status ->
+                beerRepository.findChangedSince(since.minusSeconds(60)));
+        for (Beer beer : changed) {
+            schedule(beer);
+        }
+        lastSync.put(shard, syncStart);
+        return changed.size();
+    }
+    
+    public void schedule(Beer beer) {
+        schedule(beer, releasePolicy.nextRelease(beer, Instant.now()));
+    }
+    
+    public void schedule(Beer beer, Instant release) {
+        UUID beerId = beer.getId();
+        if (release == null || release.isAfter(Instant.now().plus(Duration.ofHours(horizonHours)))) {
+            scheduled.remove(beerId);
+            return;
+        }
+        
+        UUID userId = beer.getUser().getId();
+        ScheduledReminder reminder = new ScheduledReminder(BeerKey.of(beer), userShardRouter.shardOf(userId),
+                release.toEpochMilli());
+        if (reminder.equals(scheduled.put(beerId, reminder))) {
+            return;
+        }
+        if (!wheelFor(userId).add(reminder, reminder.getDeadline())) {
+            scheduled.remove(beerId, reminder);
+        }
+    }
+    
+    public void unschedule(UUID beerId) {
+        scheduled.remove(beerId);
+    }
+    
+    // Removes and returns the reminders of one shard whose release time has passed
+    public List<ScheduledReminder> drainDue(int shard, Instant now) {
+        List<ScheduledReminder> due = new ArrayList<>();
+        wheels.get(shard).advance(now.toEpochMilli(), (reminder, deadline) -> {
+            if (scheduled.remove(reminder.getBeer().getId(), reminder)) {
+                due.add(reminder);
+            }
+        });
+        return due;
+    }
+    
+    // Puts drained reminders back so they fire on the next drain of their shard
+    public void requeue(int shard, List<ScheduledReminder> reminders) {
+        long now = System.currentTimeMillis();
+        for (ScheduledReminder reminder : reminders) {
+            ScheduledReminder requeued = reminder.withDeadline(now);
+            scheduled.put(reminder.getBeer().getId(), requeued);
+            wheels.get(shard).add(requeued, now);
+        }
+    }
+    
+    // Puts drained reminders back to fire again at the given time
+    public void requeue(int shard, List<ScheduledReminder> reminders, Instant at) {
+        long deadline = at.toEpochMilli();
+        for (ScheduledReminder reminder : reminders) {
+            ScheduledReminder requeued = reminder.withDeadline(deadline);
+            scheduled.put(reminder.getBeer().getId(), requeued);
+            if (!wheels.get(shard).add(requeued, deadline)) {
+                scheduled.remove(reminder.getBeer().getId(), requeued);
+            }
+        }
+    }
+    
+    public int shardOf(UUID userId) {
+        return Math.floorMod(userId.hashCode(), wheels.size());
+    }
+    
+    public int size() {
+        return scheduled.size();
+    }
+    
+    private HierarchicalTimingWheel<ScheduledReminder> wheelFor(UUID userId) {
+        return wheels.get(shardOf(userId));
+    }
+    
+    private int loadHorizon() {
+        return userShardRouter.fanOut(shard -> loadShardHorizon()).values().stream().mapToInt(Integer::intValue).sum();
+    }
+    
+    private int loadShardHorizon() {
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(lookbackDays);
+        LocalDate to = today.plusDays(horizonHours / 24 + 1);
+        
+        // Keyset pagination over an indexed reminder_date range; never touches older history
+        UUID afterId = new UUID(0L, 0L);
+        int loaded = 0;
+        while (true) {
+            List<Beer> page = beerRepository.findReminderCandidates(from, to, today, afterId,
+                    PageRequest.of(0, batchSize));
+            if (page.isEmpty()) {
+                return loaded;
+            }
+            for (Beer beer : page) {
+                schedule(beer);
+            }
+            loaded += page.size();
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+}
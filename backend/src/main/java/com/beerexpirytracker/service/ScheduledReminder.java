@@ -0,0 +1,53 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.model.BeerKey;
+
+import java.util.Objects;
+
+// A beer's entry in the reminder wheel: which beer, the database shard of its owner, and when its reminder
+// is released
+public final class ScheduledReminder {
+    
+    private final BeerKey beer;
+    private final String databaseShard;
+    private final long deadline;
+    
+    public ScheduledReminder(BeerKey beer, String databaseShard, long deadline) {
+        this.beer = beer;
+        this.databaseShard = databaseShard;
+        this.deadline = deadline;
+    }
+    
+    public BeerKey getBeer() {
+        return beer;
+    }
+    
+    public String getDatabaseShard() {
+        return databaseShard;
+    }
+    
+    public long getDeadline() {
+        return deadline;
+    }
+    
+    public ScheduledReminder withDeadline(long deadline) {
+        return new ScheduledReminder(beer, databaseShard, deadline);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ScheduledReminder)) {
+            return false;
+        }
+        ScheduledReminder other = (ScheduledReminder) o;
+        return deadline == other.deadline && beer.equals(other.beer) && databaseShard.equals(other.databaseShard);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(beer, databaseShard, deadline);
+    }
+}
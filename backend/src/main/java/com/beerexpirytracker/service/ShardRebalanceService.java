@@ -0,0 +1,228 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.config.ShardRoutingDataSource;
+import com.beerexpirytracker.model.ImageBlob;
+import com.beerexpirytracker.model.ImageState;
+import com.beerexpirytracker.repository.AccountDeletionJdbcRepository;
+import com.beerexpirytracker.repository.ImageBlobRepository;
+import com.beerexpirytracker.repository.ShardMoveJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline rebalancing after shards were appended to {@code datasource.shards.urls}. Every shard is
+ * scanned for users whose id the hash ring now assigns to another shard; each of them is copied to the
+ * new shard in one transaction and removed from the old one in a second. A run interrupted in between is
+ * finished by running it again, since the copy skips rows that are already there. Image blobs are copied
+ * into the new shard's blob directory and counted there; other image files stay where they are. A user is
+ * only removed from the old shard once their row is found on the new one. Must run while no application
+ * node is serving requests; runs on different nodes exclude each other through an advisory lock.
+ */
+@Service
+public class ShardRebalanceService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalanceService.class);
+    
+    private static final Set<String> BEER_TABLES = Set.of("beers", "beers_archive");
+    
+    private static final String[] IMAGE_COLUMNS = {"image_url", "thumbnail_url", "detail_image_url"};
+    
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
+    @Autowired
+    private ShardMoveJdbcRepository shardMoveRepository;
+    
+    @Autowired
+    private AccountDeletionJdbcRepository accountDeletionRepository;
+    
+    @Autowired
+    private ImageBlobRepository imageBlobRepository;
+    
+    @Autowired
+    private ImageBlobService imageBlobService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${shard.rebalance.batch-size:500}")
+    private int batchSize;
+    
+    // Only one run at a time across nodes; the lock is held on the default shard for the whole run
+    public Map<String, Object> rebalance() {
+        return userShardRouter.callOn(ShardRoutingDataSource.DEFAULT_SHARD,
+                () -> shardMoveRepository.withRebalanceLock(this::rebalanceShards));
+    }
+    
+    private Map<String, Object> rebalanceShards() {
+        long start = System.nanoTime();
+        int globalPolicies = copyGlobalLeadTimes();
+        int scanned = 0;
+        int moved = 0;
+        for (String source : userShardRouter.getShards()) {
+            UUID afterId = new UUID(0L, 0L);
+            List<UUID> page;
+            while (!(page = findUserIds(source, afterId)).isEmpty()) {
+                for (UUID userId : page) {
+                    String target = userShardRouter.shardOf(userId);
+                    if (!target.equals(source)) {
+                        moveUser(userId, source, target);
+                        moved++;
+                    }
+                }
+                scanned += page.size();
+                afterId = page.get(page.size() - 1);
+            }
+            logger.info("Rebalanced shard {}: {} users scanned so far, {} moved", source, scanned, moved);
+        }
+        
+        Map<String, Object> report = new HashMap<>();
+        report.put("shards", userShardRouter.getShards().size());
+        report.put("usersScanned", scanned);
+        report.put("usersMoved", moved);
+        report.put("globalPolicies", globalPolicies);
+        report.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return report;
+    }
+    
+    // Every shard reads the global lead times from its own table; new shards start out without them
+    private int copyGlobalLeadTimes() {
+        List<Map<String, Object>> policies = userShardRouter.callOn(ShardRoutingDataSource.DEFAULT_SHARD,
+                shardMoveRepository::findGlobalLeadTimes);
+        for (String shard : userShardRouter.getShards()) {
+            if (!shard.equals(ShardRoutingDataSource.DEFAULT_SHARD)) {
+                userShardRouter.runOn(shard, () -> transactionTemplate.executeWithoutResult(status ->
+                        shardMoveRepository.replaceGlobalLeadTimes(policies)));
+            }
+        }
+        return policies.size();
+    }
+    
+    private List<UUID> findUserIds(String shard, UUID afterId) {
+        return userShardRouter.callOn(shard, () -> shardMoveRepository.findUserIds(afterId, batchSize));
+    }
+    
+    private void moveUser(UUID userId, String source, String target) {
+        Map<String, List<Map<String, Object>>> rows = userShardRouter.callOn(source,
+                () -> transactionTemplate.execute(status -> shardMoveRepository.findUserRows(userId)));
+        
+        // Blob images get their own copies on the target shard; the beers are pointed at those
+        Map<String, ImageBlob> blobs = new HashMap<>();
+        Map<String, String> movedPaths = new HashMap<>();
+        Set<String> hashes = blobHashes(rows);
+        if (!hashes.isEmpty()) {
+            for (ImageBlob blob : userShardRouter.callOn(source, () -> imageBlobRepository.findAllById(hashes))) {
+                blobs.put(blob.getHash(), blob);
+                String[] paths = {blob.getOriginalPath(), blob.getThumbnailPath(), blob.getDetailPath()};
+                for (String path : paths) {
+                    if (path != null) {
+                        movedPaths.put(path, copyBlobFile(path, blob.getHash(), target));
+                    }
+                }
+            }
+        }
+        for (String table : BEER_TABLES) {
+            for (Map<String, Object> beer : rows.get(table)) {
+                for (String column : IMAGE_COLUMNS) {
+                    Object path = beer.get(column);
+                    if (movedPaths.containsKey(path)) {
+                        beer.put(column, movedPaths.get(path));
+                    }
+                }
+            }
+        }
+        
+        userShardRouter.runOn(target, () -> transactionTemplate.executeWithoutResult(status -> {
+            // Only beers actually inserted count, so repeating a move doesn't count them twice
+            Map<String, Integer> uses = new HashMap<>();
+            rows.forEach((table, tableRows) -> {
+                int[] inserted = shardMoveRepository.insertRows(table, tableRows);
+                if (BEER_TABLES.contains(table)) {
+                    for (int i = 0; i < inserted.length; i++) {
+                        String hash = (String) tableRows.get(i).get("image_hash");
+                        if (inserted[i] == 1 && blobs.containsKey(hash) && isBlobImage(tableRows.get(i))) {
+                            uses.merge(hash, 1, Integer::sum);
+                        }
+                    }
+                }
+            });
+            uses.forEach((hash, count) -> {
+                ImageBlob blob = blobs.get(hash);
+                imageBlobRepository.register(hash, movedPaths.get(blob.getOriginalPath()),
+                        movedPaths.get(blob.getThumbnailPath()), movedPaths.get(blob.getDetailPath()),
+                        blob.getSizeBytes(), Instant.now());
+                imageBlobRepository.retain(hash, count);
+            });
+        }));
+        
+        // The user row is inserted in the same transaction as the rest, so finding it means the copy committed
+        if (!userShardRouter.callOn(target, () -> shardMoveRepository.userExists(userId))) {
+            throw new IllegalStateException("User " + userId + " was not copied to shard " + target);
+        }
+        
+        // Staged uploads and pre-blob images are still used by the copied beers, so only blobs are released
+        userShardRouter.runOn(source, () -> transactionTemplate.executeWithoutResult(status -> {
+            accountDeletionRepository.releaseImageBlobs(userId, imageBlobService.getBlobPathPrefix());
+            accountDeletionRepository.deleteBeers(userId);
+            accountDeletionRepository.deleteUser(userId);
+        }));
+        logger.debug("Moved user {} from {} to {}", userId, source, target);
+    }
+    
+    private Set<String> blobHashes(Map<String, List<Map<String, Object>>> rows) {
+        Set<String> hashes = new HashSet<>();
+        for (String table : BEER_TABLES) {
+            for (Map<String, Object> beer : rows.get(table)) {
+                if (isBlobImage(beer) && beer.get("image_hash") != null) {
+                    hashes.add((String) beer.get("image_hash"));
+                }
+            }
+        }
+        return hashes;
+    }
+    
+    // Holds before and after the paths are rewritten, as both copies lie in the blob store
+    private boolean isBlobImage(Map<String, Object> beer) {
+        return !ImageState.PENDING.name().equals(beer.get("image_state"))
+                && imageBlobService.isBlob((String) beer.get("image_url"));
+    }
+    
+    // Copies under a temporary name first, so a copy cut short is never taken for a complete blob
+    private String copyBlobFile(String sourcePath, String hash, String target) {
+        String fileName = Paths.get(sourcePath).getFileName().toString();
+        if (!fileName.startsWith(hash)) {
+            throw new IllegalStateException("Unexpected image blob path " + sourcePath);
+        }
+        Path targetPath = imageBlobService.pathFor(target, hash, fileName.substring(hash.length()));
+        try {
+            if (!Files.exists(targetPath)) {
+                Files.createDirectories(targetPath.getParent());
+                Path partial = targetPath.resolveSibling(targetPath.getFileName() + ".part");
+                Files.copy(Paths.get(sourcePath), partial, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(partial, targetPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to copy image blob " + sourcePath + " to " + target, e);
+        }
+        return targetPath.toString();
+    }
+}
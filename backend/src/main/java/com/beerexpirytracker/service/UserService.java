@@ -2,23 +2,70 @@ package com.beerexpirytracker.service;
 
 import com.beerexpirytracker.dto.UserDTO;
 import com.beerexpirytracker.model.User;
+import com.beerexpirytracker.model.UuidV7;
+import com.beerexpirytracker.repository.AccountDeletionJdbcRepository;
+import com.beerexpirytracker.repository.BeerRepository;
+import com.beerexpirytracker.repository.UserDeviceRepository;
+import com.beerexpirytracker.repository.UserDirectoryJdbcRepository;
 import com.beerexpirytracker.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
 public class UserService {
     
+    // How stale a device's last_seen_at may get before a login refreshes it
+    private static final Duration DEVICE_SEEN_REFRESH = Duration.ofDays(1);
+    
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private BeerRepository beerRepository;
+    
+    @Autowired
+    private UserDeviceRepository userDeviceRepository;
+    
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private AccountDeletionJdbcRepository accountDeletionRepository;
+    
+    @Autowired
+    private ImageBlobService imageBlobService;
+    
+    @Autowired
+    private UserDirectoryJdbcRepository userDirectoryRepository;
+    
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Transactional(readOnly = true)
     public UserDTO getUserById(UUID id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + id));
@@ -26,6 +73,7 @@ public class UserService {
         return convertToDTO(user);
     }
     
+    @Transactional(readOnly = true)
     public UserDTO getUserByUsername(String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
@@ -33,30 +81,135 @@ public class UserService {
         return convertToDTO(user);
     }
     
-    public void updateDeviceToken(String username, String deviceToken) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
+    // A single upsert that writes nothing when the device is already registered to this user
+    @Transactional
+    public void registerDevice(UUID userId, String deviceToken) {
+        Instant now = Instant.now();
+        userDeviceRepository.upsert(UuidV7.generate(), userId, deviceToken, now,
+                now.minus(DEVICE_SEEN_REFRESH));
+    }
+    
+    @Transactional
+    public void unregisterDevice(UUID userId, String deviceToken) {
+        userDeviceRepository.deleteByUserIdAndToken(userId, deviceToken);
+    }
+    
+    @Transactional
+    public UserDTO updateReminderPreferences(UUID id, String timeZone, LocalTime windowStart, LocalTime windowEnd,
+                                             String locale) {
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + id));
+        
+        if (timeZone != null) {
+            try {
+                user.setTimeZone(ZoneId.of(timeZone).getId());
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Unknown time zone: " + timeZone);
+            }
+        }
+        
+        if (locale != null) {
+            Locale parsed = Locale.forLanguageTag(locale);
+            if (parsed.getLanguage().isEmpty()) {
+                throw new IllegalArgumentException("Unknown locale: " + locale);
+            }
+            user.setLocale(parsed.toLanguageTag());
+        }
         
-        user.setDeviceToken(deviceToken);
-        userRepository.save(user);
+        LocalTime start = windowStart != null ? windowStart : user.getReminderWindowStart();
+        LocalTime end = windowEnd != null ? windowEnd : user.getReminderWindowEnd();
+        if (start != null && end != null && !start.isBefore(end)) {
+            throw new IllegalArgumentException("Reminder window must start before it ends");
+        }
+        user.setReminderWindowStart(start);
+        user.setReminderWindowEnd(end);
+        User savedUser = userRepository.save(user);
+        evictAfterCommit(savedUser.getId());
+        
+        // Release times of all the user's beers moved; touching them lets every node's reminder wheel resync
+        beerRepository.touchByUserId(id, Instant.now());
+        
+        return convertToDTO(savedUser);
     }
     
+    // Registration checks go to the directory on the default shard's primary, so a just-created account
+    // on any shard is never missed
     public boolean existsByUsername(String username) {
-        return userRepository.existsByUsername(username);
+        return userShardRouter.callOnDirectory(() -> userDirectoryRepository.existsByUsername(username));
     }
     
     public boolean existsByEmail(String email) {
-        return userRepository.existsByEmail(email);
+        return userShardRouter.callOnDirectory(() -> userDirectoryRepository.existsByEmail(email));
     }
     
+    // The directory entry claims the username and email across all shards first; the user is then stored
+    // on the shard its id maps to, and the entry is withdrawn again if that fails
     public User createUser(String username, String email, String password, String deviceToken) {
         User user = new User();
+        user.setId(UuidV7.generate());
         user.setUsername(username);
         user.setEmail(email);
         user.setPassword(passwordEncoder.encode(password));
-        user.setDeviceToken(deviceToken);
         
-        return userRepository.save(user);
+        UUID userId = user.getId();
+        if (!userShardRouter.callOnDirectory(() -> userDirectoryRepository.insert(userId, username, email))) {
+            throw new IllegalArgumentException("Username or email is already taken!");
+        }
+        try {
+            return userShardRouter.callForUser(userId, () -> transactionTemplate.execute(status -> {
+                User savedUser = userRepository.saveAndFlush(user);
+                if (deviceToken != null && !deviceToken.isEmpty()) {
+                    registerDevice(savedUser.getId(), deviceToken);
+                }
+                return savedUser;
+            }));
+        } catch (RuntimeException e) {
+            userShardRouter.runOnDirectory(() -> userDirectoryRepository.delete(userId));
+            throw e;
+        }
+    }
+    
+    // Removes the account with a fixed number of set-based statements instead of letting Hibernate cascade
+    // through every beer. Image blobs are released here; files only these beers used are queued and deleted
+    // in the background. Reminders still scheduled in memory are dropped when they fire and find no beer.
+    // The directory entry goes last, once the user's shard has committed.
+    public Map<String, Object> deleteAccount(UUID userId) {
+        Map<String, Object> report = userShardRouter.callForUser(userId, () -> transactionTemplate.execute(status -> {
+            String blobPathPrefix = imageBlobService.getBlobPathPrefix();
+            accountDeletionRepository.releaseImageBlobs(userId, blobPathPrefix);
+            int queuedFiles = accountDeletionRepository.queueImageFiles(userId, blobPathPrefix);
+            int deletedBeers = accountDeletionRepository.deleteBeers(userId);
+            if (accountDeletionRepository.deleteUser(userId) == 0) {
+                throw new UsernameNotFoundException("User not found with id: " + userId);
+            }
+            evictAfterCommit(userId, true);
+            
+            Map<String, Object> deleted = new HashMap<>();
+            deleted.put("deletedBeers", deletedBeers);
+            deleted.put("queuedImageFiles", queuedFiles);
+            return deleted;
+        }));
+        userShardRouter.runOnDirectory(() -> userDirectoryRepository.delete(userId));
+        return report;
+    }
+    
+    // Hibernate already updates the cached entry on write; evicting once more after commit also clears
+    // anything a concurrent read put back from the pre-commit state
+    private void evictAfterCommit(UUID userId) {
+        evictAfterCommit(userId, false);
+    }
+    
+    // Writes made through JDBC aren't seen by Hibernate, so they also have to drop the cached username lookups
+    private void evictAfterCommit(UUID userId, boolean queries) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                entityManagerFactory.getCache().evict(User.class, userId);
+                if (queries) {
+                    entityManagerFactory.getCache().unwrap(Cache.class).evictDefaultQueryRegion();
+                }
+            }
+        });
     }
     
     private UserDTO convertToDTO(User user) {
@@ -64,7 +217,11 @@ public class UserService {
                 user.getId(),
                 user.getUsername(),
                 user.getEmail(),
-                user.getDeviceToken()
+                userDeviceRepository.findTokensByUserId(user.getId()),
+                user.getTimeZone(),
+                user.getReminderWindowStart(),
+                user.getReminderWindowEnd(),
+                user.getLocale()
         );
     }
 } 
\ No newline at end of file
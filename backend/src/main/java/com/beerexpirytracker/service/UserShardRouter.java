@@ -0,0 +1,194 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.config.ShardRoutingDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Maps users to database shards through a consistent hash of their id, and binds the current thread to
+ * a shard so repositories and transactions use that shard's database. All of a user's rows live on one
+ * shard; the username directory lives on the default shard. Work that isn't about one user (scheduled
+ * jobs) runs once per shard. Shards have to be bound before a transaction starts: a transaction keeps
+ * the connection it began with. Open-in-view is off, so a request's sessions are opened per transaction
+ * while its shard is bound rather than once for the whole request; directory access uses plain JDBC.
+ */
+@Service
+public class UserShardRouter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(UserShardRouter.class);
+    
+    @Value("${datasource.shards.urls:}")
+    private String[] shardUrls;
+    
+    // More points even out the share each shard gets; must be the same on every node
+    @Value("${datasource.shards.virtual-nodes:160}")
+    private int virtualNodes;
+    
+    private List<String> shards;
+    private ConsistentHashRing<String> ring;
+    private ExecutorService fanOutExecutor;
+    
+    @PostConstruct
+    void init() {
+        List<String> names = new ArrayList<>();
+        names.add(ShardRoutingDataSource.DEFAULT_SHARD);
+        for (int i = 0; i < shardUrls.length; i++) {
+            if (!shardUrls[i].isBlank()) {
+                names.add(ShardRoutingDataSource.shardName(i + 1));
+            }
+        }
+        shards = List.copyOf(names);
+        ring = new ConsistentHashRing<>(shards, virtualNodes);
+        if (shards.size() > 1) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            fanOutExecutor = Executors.newFixedThreadPool(shards.size(), runnable -> {
+                Thread thread = new Thread(runnable, "shard-fan-out-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            logger.info("Routing users across {} database shards", shards.size());
+        }
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        if (fanOutExecutor != null) {
+            fanOutExecutor.shutdownNow();
+        }
+    }
+    
+    public List<String> getShards() {
+        return shards;
+    }
+    
+    public boolean isSharded() {
+        return shards.size() > 1;
+    }
+    
+    public String shardOf(UUID userId) {
+        return ring.nodeFor(userId);
+    }
+    
+    public String currentShard() {
+        return ShardRoutingDataSource.getCurrentShard();
+    }
+    
+    // Binds the shard until the returned binding is closed, restoring whatever was bound before
+    public Binding bind(String shard) {
+        if (!shards.contains(shard)) {
+            throw new IllegalArgumentException("Unknown database shard: " + shard);
+        }
+        if (!shard.equals(currentShard()) && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch to database shard " + shard + " inside a transaction on "
+                    + currentShard());
+        }
+        return new Binding(ShardRoutingDataSource.bind(shard));
+    }
+    
+    public <T> T callOn(String shard, Supplier<T> action) {
+        Binding binding = bind(shard);
+        try {
+            return action.get();
+        } finally {
+            binding.close();
+        }
+    }
+    
+    public void runOn(String shard, Runnable action) {
+        Binding binding = bind(shard);
+        try {
+            action.run();
+        } finally {
+            binding.close();
+        }
+    }
+    
+    public <T> T callForUser(UUID userId, Supplier<T> action) {
+        return callOn(shardOf(userId), action);
+    }
+    
+    public void runForUser(UUID userId, Runnable action) {
+        runOn(shardOf(userId), action);
+    }
+    
+    // Username and email lookups across all users
+    public <T> T callOnDirectory(Supplier<T> action) {
+        return callOn(ShardRoutingDataSource.DEFAULT_SHARD, action);
+    }
+    
+    public void runOnDirectory(Runnable action) {
+        runOn(ShardRoutingDataSource.DEFAULT_SHARD, action);
+    }
+    
+    // Runs the action on each shard in turn; a failing shard is logged and doesn't keep the others from running
+    public void forEachShard(Runnable action) {
+        for (String shard : shards) {
+            try {
+                runOn(shard, action);
+            } catch (RuntimeException e) {
+                logger.error("Failed on database shard {}", shard, e);
+            }
+        }
+    }
+    
+    // Runs the action on all shards at once and returns each shard's result; rethrows the first failure
+    public <T> Map<String, T> fanOut(Function<String, T> action) {
+        return fanOut(shards, action);
+    }
+    
+    // Same for just the given shards
+    public <T> Map<String, T> fanOut(Collection<String> targets, Function<String, T> action) {
+        Map<String, T> results = new LinkedHashMap<>();
+        if (targets.size() == 1) {
+            String shard = targets.iterator().next();
+            results.put(shard, callOn(shard, () -> action.apply(shard)));
+            return results;
+        }
+        Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        for (String shard : targets) {
+            futures.put(shard, CompletableFuture.supplyAsync(() -> callOn(shard, () -> action.apply(shard)),
+                    fanOutExecutor));
+        }
+        try {
+            futures.forEach((shard, future) -> results.put(shard, future.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+    
+    public static final class Binding implements AutoCloseable {
+        private final String previous;
+        
+        private Binding(String previous) {
+            this.previous = previous;
+        }
+        
+        @Override
+        public void close() {
+            ShardRoutingDataSource.restore(previous);
+        }
+    }
+}
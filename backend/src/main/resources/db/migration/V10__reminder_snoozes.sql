@@ -0,0 +1,3 @@
+-- The date a snooze pushed a beer's reminder to, so lead-time recomputes keep it. Snoozes applied before
+-- this migration only live in reminder_date. Nullable without a default, so adding it doesn't rewrite beers.
+ALTER TABLE beers ADD COLUMN reminder_snoozed_until date;
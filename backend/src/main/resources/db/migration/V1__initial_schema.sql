@@ -0,0 +1,92 @@
+-- Schema as previously created by spring.jpa.hibernate.ddl-auto=update. Existing databases are
+-- baselined at this version (spring.flyway.baseline-on-migrate) instead of running it.
+
+CREATE TABLE users (
+    id uuid NOT NULL,
+    username varchar(255) NOT NULL,
+    email varchar(255) NOT NULL,
+    password varchar(255) NOT NULL,
+    time_zone varchar(255),
+    reminder_window_start time(6),
+    reminder_window_end time(6),
+    locale varchar(255),
+    admin boolean NOT NULL DEFAULT false,
+    CONSTRAINT users_pkey PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE beers (
+    id uuid NOT NULL,
+    brand_name varchar(255) NOT NULL,
+    product_name varchar(255) NOT NULL,
+    type varchar(255),
+    expiry_date date NOT NULL,
+    reminder_date date NOT NULL,
+    image_url varchar(255),
+    thumbnail_url varchar(255),
+    detail_image_url varchar(255),
+    image_state varchar(255),
+    image_hash varchar(255),
+    reminder_sent boolean NOT NULL,
+    reminder_count integer NOT NULL,
+    last_reminder_date date,
+    reminder_failure_count integer NOT NULL DEFAULT 0,
+    updated_at timestamp(6) with time zone,
+    user_id uuid,
+    CONSTRAINT beers_pkey PRIMARY KEY (id),
+    CONSTRAINT fk_beers_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE INDEX idx_beers_reminder_date ON beers (reminder_date);
+CREATE INDEX idx_beers_updated_at ON beers (updated_at);
+
+CREATE TABLE user_devices (
+    id uuid NOT NULL,
+    user_id uuid NOT NULL,
+    token varchar(4096) NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    last_seen_at timestamp(6) with time zone NOT NULL,
+    CONSTRAINT user_devices_pkey PRIMARY KEY (id),
+    CONSTRAINT uk_user_devices_token UNIQUE (token),
+    CONSTRAINT fk_user_devices_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE INDEX idx_user_devices_user_id ON user_devices (user_id);
+
+CREATE TABLE reminder_shard_leases (
+    id uuid NOT NULL,
+    run_slot timestamp(6) with time zone NOT NULL,
+    shard integer NOT NULL,
+    owner varchar(255),
+    lease_until timestamp(6) with time zone,
+    completed boolean NOT NULL,
+    completed_at timestamp(6) with time zone,
+    CONSTRAINT reminder_shard_leases_pkey PRIMARY KEY (id),
+    CONSTRAINT uk_reminder_shard_leases_slot UNIQUE (run_slot, shard)
+);
+
+CREATE TABLE reminder_lead_times (
+    id uuid NOT NULL,
+    user_id uuid,
+    beer_type varchar(255),
+    lead_days integer NOT NULL,
+    updated_at timestamp(6) with time zone,
+    CONSTRAINT reminder_lead_times_pkey PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_reminder_lead_times_scope ON reminder_lead_times (user_id, beer_type);
+
+CREATE TABLE image_blobs (
+    hash varchar(64) NOT NULL,
+    original_path varchar(255) NOT NULL,
+    thumbnail_path varchar(255),
+    detail_path varchar(255),
+    size_bytes bigint NOT NULL,
+    ref_count integer NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    unreferenced_since timestamp(6) with time zone,
+    CONSTRAINT image_blobs_pkey PRIMARY KEY (hash)
+);
+
+CREATE INDEX idx_image_blobs_unreferenced_since ON image_blobs (unreferenced_since);
@@ -0,0 +1,13 @@
+-- Tokens from the old single users.device_token column move to user_devices. Only databases that
+-- predate user_devices still have the column; everywhere else this is a no-op.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = 'users' AND column_name = 'device_token') THEN
+        INSERT INTO user_devices (id, user_id, token, created_at, last_seen_at)
+        SELECT gen_random_uuid(), id, device_token, now(), now() FROM users
+        WHERE device_token IS NOT NULL AND device_token <> ''
+        ON CONFLICT (token) DO NOTHING;
+        ALTER TABLE users DROP COLUMN device_token;
+    END IF;
+END $$;
@@ -0,0 +1,12 @@
+-- Indexes matched to the repository queries. CONCURRENTLY keeps the beers table writable while they
+-- build, so Flyway runs this migration outside a transaction.
+
+-- Beer list and expiry calendar: findByUserId and findByUserIdAndExpiryDateBetweenOrderByExpiryDateAsc.
+-- Also serves as the index for the user_id foreign key.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_beers_user_expiry ON beers (user_id, expiry_date);
+
+-- Every reminder query (findBeersNeedingReminders, findReminderCandidates, countDueUnsent) is limited to
+-- beers below the five-reminder cap, so the index skips the reminded-out history.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_beers_reminder_due ON beers (reminder_date) WHERE reminder_count < 5;
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_beers_reminder_date;
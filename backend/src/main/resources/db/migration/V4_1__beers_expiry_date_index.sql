@@ -0,0 +1,4 @@
+-- Lets the archiver find the oldest expired beers without scanning the table. CONCURRENTLY keeps the beers
+-- table writable while it builds, so Flyway runs this migration outside a transaction. It has to come
+-- before V5: a partitioned table can't be indexed concurrently.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_beers_expiry_date ON beers (expiry_date);
@@ -0,0 +1,26 @@
+-- Cold storage for beers long past their expiry date, filled by BeerArchiveService. Same columns as
+-- beers, so rows move with a single INSERT ... SELECT.
+CREATE TABLE beers_archive (
+    id uuid NOT NULL,
+    brand_name varchar(255) NOT NULL,
+    product_name varchar(255) NOT NULL,
+    type varchar(255),
+    expiry_date date NOT NULL,
+    reminder_date date NOT NULL,
+    image_url varchar(255),
+    thumbnail_url varchar(255),
+    detail_image_url varchar(255),
+    image_state varchar(255),
+    image_hash varchar(255),
+    reminder_sent boolean NOT NULL,
+    reminder_count integer NOT NULL,
+    last_reminder_date date,
+    reminder_failure_count integer NOT NULL DEFAULT 0,
+    updated_at timestamp(6) with time zone,
+    user_id uuid,
+    archived_at timestamp(6) with time zone NOT NULL,
+    CONSTRAINT beers_archive_pkey PRIMARY KEY (id),
+    CONSTRAINT fk_beers_archive_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE INDEX idx_beers_archive_user_expiry ON beers_archive (user_id, expiry_date);
@@ -0,0 +1,59 @@
+-- Converts beers into a table range-partitioned by expiry month (beers_pYYYY_MM), plus a default
+-- partition for dates no monthly partition covers yet. BeerPartitionService keeps creating partitions
+-- ahead of time and detaches old ones. Rewrites the whole table, so run it in a maintenance window.
+--
+-- The primary key has to include the partition key, so it becomes (id, expiry_date); ids stay unique
+-- in practice as they are generated UUIDs.
+
+CREATE TABLE beers_partitioned (
+    id uuid NOT NULL,
+    brand_name varchar(255) NOT NULL,
+    product_name varchar(255) NOT NULL,
+    type varchar(255),
+    expiry_date date NOT NULL,
+    reminder_date date NOT NULL,
+    image_url varchar(255),
+    thumbnail_url varchar(255),
+    detail_image_url varchar(255),
+    image_state varchar(255),
+    image_hash varchar(255),
+    reminder_sent boolean NOT NULL,
+    reminder_count integer NOT NULL,
+    last_reminder_date date,
+    reminder_failure_count integer NOT NULL DEFAULT 0,
+    updated_at timestamp(6) with time zone,
+    user_id uuid
+) PARTITION BY RANGE (expiry_date);
+
+CREATE TABLE beers_default PARTITION OF beers_partitioned DEFAULT;
+
+-- Monthly partitions from the oldest month still in the table (at most the last 12) to a year ahead
+DO $$
+DECLARE
+    first_month date := GREATEST(
+        COALESCE((SELECT date_trunc('month', min(expiry_date))::date FROM beers), date_trunc('month', CURRENT_DATE)::date),
+        (date_trunc('month', CURRENT_DATE) - interval '12 months')::date);
+    last_month date := (date_trunc('month', CURRENT_DATE) + interval '12 months')::date;
+    part_month date := first_month;
+BEGIN
+    WHILE part_month <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF beers_partitioned FOR VALUES FROM (%L) TO (%L)',
+                       'beers_p' || to_char(part_month, 'YYYY_MM'), part_month, (part_month + interval '1 month')::date);
+        part_month := (part_month + interval '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO beers_partitioned SELECT id, brand_name, product_name, type, expiry_date, reminder_date, image_url,
+    thumbnail_url, detail_image_url, image_state, image_hash, reminder_sent, reminder_count, last_reminder_date,
+    reminder_failure_count, updated_at, user_id FROM beers;
+
+DROP TABLE beers;
+ALTER TABLE beers_partitioned RENAME TO beers;
+
+-- Defined on the parent, so every partition, including the ones created later, gets them
+ALTER TABLE beers ADD CONSTRAINT beers_pkey PRIMARY KEY (id, expiry_date);
+ALTER TABLE beers ADD CONSTRAINT fk_beers_user FOREIGN KEY (user_id) REFERENCES users (id);
+CREATE INDEX idx_beers_updated_at ON beers (updated_at);
+CREATE INDEX idx_beers_user_expiry ON beers (user_id, expiry_date);
+CREATE INDEX idx_beers_reminder_due ON beers (reminder_date) WHERE reminder_count < 5;
+CREATE INDEX idx_beers_expiry_date ON beers (expiry_date);
@@ -0,0 +1,8 @@
+-- Image files waiting to be deleted from disk. Bulk deletes (account deletion) queue the files of the
+-- removed beers here in the same transaction; ImageBlobService deletes them in the background.
+CREATE TABLE image_file_deletions (
+    id bigserial NOT NULL,
+    path varchar(255) NOT NULL,
+    created_at timestamp(6) with time zone NOT NULL,
+    CONSTRAINT image_file_deletions_pkey PRIMARY KEY (id)
+);
@@ -0,0 +1,14 @@
+-- Username and email of every user with the user's id, so login and registration can find a user
+-- without knowing which shard holds it. Only the default shard's copy is used; the unique constraints
+-- there keep usernames and emails unique across all shards.
+CREATE TABLE user_directory (
+    user_id uuid NOT NULL,
+    username varchar(255) NOT NULL,
+    email varchar(255) NOT NULL,
+    CONSTRAINT user_directory_pkey PRIMARY KEY (user_id),
+    CONSTRAINT uk_user_directory_username UNIQUE (username),
+    CONSTRAINT uk_user_directory_email UNIQUE (email)
+);
+
+INSERT INTO user_directory (user_id, username, email)
+SELECT id, username, email FROM users;
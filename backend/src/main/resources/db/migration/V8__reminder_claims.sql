@@ -0,0 +1,3 @@
+-- Set while a node is sending a beer's reminder, so no other node sends it at the same time; cleared when
+-- the outcome is recorded. Nullable without a default, so adding it doesn't rewrite beers.
+ALTER TABLE beers ADD COLUMN reminder_claimed_at timestamp(6) with time zone;
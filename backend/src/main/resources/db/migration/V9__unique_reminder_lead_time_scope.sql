@@ -0,0 +1,13 @@
+-- At most one lead-time policy per (user, type) scope, with nulls counting as equal so there is also only
+-- one global row per type. Duplicates left by concurrent stores are dropped, keeping the latest. The
+-- constraint's index replaces the plain scope index. NULLS NOT DISTINCT needs PostgreSQL 15.
+DELETE FROM reminder_lead_times WHERE id IN (
+    SELECT id FROM (
+        SELECT id, row_number() OVER (PARTITION BY user_id, beer_type ORDER BY updated_at DESC NULLS LAST, id DESC) AS rn
+        FROM reminder_lead_times) ranked
+    WHERE rn > 1);
+
+ALTER TABLE reminder_lead_times
+    ADD CONSTRAINT uk_reminder_lead_times_scope UNIQUE NULLS NOT DISTINCT (user_id, beer_type);
+
+DROP INDEX idx_reminder_lead_times_scope;
@@ -0,0 +1,112 @@
+package com.beerexpirytracker.config;
+
+import com.beerexpirytracker.testsupport.EmbeddedDatabases;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A primary and a replica on two embedded PostgreSQL servers, wired the way DataSourceConfig does it. Each
+// database has a node table naming it, and the replica's lag is whatever its replica_lag table says.
+class ReplicaRoutingDataSourceTest {
+    
+    private static final String LAG_QUERY = "SELECT seconds FROM replica_lag";
+    
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    
+    private ReplicaRoutingDataSource routing;
+    // What repositories and the transaction manager get
+    private DataSource routed;
+    
+    @BeforeEach
+    void createDatabases() {
+        primary = new JdbcTemplate(database("replication-primary", "primary"));
+        replica = new JdbcTemplate(database("replication-replica", "replica"));
+    }
+    
+    @Test
+    void readOnlyTransactionsGoToTheReplicaAndWritesToThePrimary() {
+        route(replica.getDataSource());
+        
+        assertThat(runsOn(true)).isEqualTo("replica");
+        assertThat(runsOn(false)).isEqualTo("primary");
+        
+        transactionTemplate(false).executeWithoutResult(status ->
+                new JdbcTemplate(routed).update("INSERT INTO node (name) VALUES ('written')"));
+        assertThat(primary.queryForObject("SELECT count(*) FROM node WHERE name = 'written'", Integer.class))
+                .isEqualTo(1);
+        assertThat(replica.queryForObject("SELECT count(*) FROM node WHERE name = 'written'", Integer.class))
+                .isZero();
+    }
+    
+    @Test
+    void readsFallBackToThePrimaryWhileTheReplicaLags() {
+        route(replica.getDataSource());
+        
+        replica.update("UPDATE replica_lag SET seconds = 2.5");
+        routing.checkReplicas();
+        assertThat(routing.getLagMillis("replica-1")).isEqualTo(2500);
+        assertThat(routing.isUsable("replica-1")).isFalse();
+        assertThat(runsOn(true)).isEqualTo("primary");
+        
+        replica.update("UPDATE replica_lag SET seconds = 0.2");
+        routing.checkReplicas();
+        assertThat(routing.isUsable("replica-1")).isTrue();
+        assertThat(runsOn(true)).isEqualTo("replica");
+    }
+    
+    @Test
+    void readsFallBackToThePrimaryWhenTheReplicaIsUnreachable() {
+        DataSource unreachable = database("replication-unreachable", "replica");
+        route(unreachable);
+        assertThat(runsOn(true)).isEqualTo("replica");
+        
+        EmbeddedDatabases.stop("replication-unreachable");
+        routing.checkReplicas();
+        
+        assertThat(routing.getLagMillis("replica-1")).isEqualTo(-1);
+        assertThat(routing.isUsable("replica-1")).isFalse();
+        assertThat(runsOn(true)).isEqualTo("primary");
+    }
+    
+    // Unpooled, so a stopped server fails the next connection right away
+    private DataSource database(String server, String name) {
+        DataSource dataSource = new DriverManagerDataSource(EmbeddedDatabases.createDatabase(server),
+                EmbeddedDatabases.USERNAME, EmbeddedDatabases.PASSWORD);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE node (name varchar(255))");
+        jdbcTemplate.update("INSERT INTO node (name) VALUES (?)", name);
+        jdbcTemplate.execute("CREATE TABLE replica_lag (seconds double precision)");
+        jdbcTemplate.execute("INSERT INTO replica_lag VALUES (NULL)");
+        return dataSource;
+    }
+    
+    private void route(DataSource replicaDataSource) {
+        routing = new ReplicaRoutingDataSource(primary.getDataSource(), Map.of("replica-1", replicaDataSource),
+                1000, LAG_QUERY);
+        routing.afterPropertiesSet();
+        routing.checkReplicas();
+        routed = new LazyConnectionDataSourceProxy(routing);
+    }
+    
+    // Name of the database a transaction's statements ran on
+    private String runsOn(boolean readOnly) {
+        return transactionTemplate(readOnly).execute(status ->
+                new JdbcTemplate(routed).queryForObject("SELECT min(name) FROM node", String.class));
+    }
+    
+    private TransactionTemplate transactionTemplate(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(routed));
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate;
+    }
+}
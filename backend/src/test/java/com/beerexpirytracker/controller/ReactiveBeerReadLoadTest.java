@@ -0,0 +1,287 @@
+package com.beerexpirytracker.controller;
+
+import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.model.UuidV7;
+import com.beerexpirytracker.repository.BeerRepository;
+import com.beerexpirytracker.security.JwtUtils;
+import com.beerexpirytracker.security.UserDetailsImpl;
+import com.beerexpirytracker.testsupport.EmbeddedDatabases;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.tomcat.util.threads.ThreadPoolExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The blocking and the reactive beer list under the same load: every client keeps its own connection and asks
+// for its owner's beers back to back. Prints requests per second and latency, and how many connections, JVM
+// threads and Tomcat request threads each path needed.
+// Run with ./gradlew loadTest; -Dloadtest.connections=... and -Dloadtest.seconds=... change the load.
+// Client and server share this JVM, so 10000 connections need an open-file limit above 20000.
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "beers.reactive-read.enabled=true",
+        "management.server.port=-1",
+        // Settings the deployment provides; nothing is sent during the test
+        "spring.mail.host=localhost",
+        "push.notification.enabled=false",
+        "push.notification.api-key=unused",
+        "jwt.secret=bG9hZC10ZXN0LXNpZ25pbmcta2V5LW9mLTI1Ni1iaXRz",
+        // Idle connections of a finished run are closed before the next one starts
+        "server.tomcat.keep-alive-timeout=2s"})
+class ReactiveBeerReadLoadTest {
+    
+    @SpringBootApplication(scanBasePackages = "com.beerexpirytracker")
+    @EntityScan(basePackageClasses = Beer.class)
+    @EnableJpaRepositories(basePackageClasses = BeerRepository.class)
+    static class LoadTestApplication {
+    }
+    
+    private static final int CONNECTIONS = Integer.getInteger("loadtest.connections", 10_000);
+    private static final int SECONDS = Integer.getInteger("loadtest.seconds", 30);
+    
+    private static final int USERS = 100;
+    private static final int BEERS_PER_USER = 50;
+    
+    // Clients are started in steps of this many, a quarter second apart, so the accept queue keeps up
+    private static final int RAMP_STEP = 500;
+    
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        // Once: the JDBC and the R2DBC pools each resolve the URL
+        String url = EmbeddedDatabases.createDatabase("load");
+        registry.add("spring.datasource.url", () -> url);
+        registry.add("spring.datasource.username", () -> EmbeddedDatabases.USERNAME);
+        registry.add("spring.datasource.password", () -> EmbeddedDatabases.PASSWORD);
+    }
+    
+    @Autowired
+    private ServletWebServerApplicationContext webServerContext;
+    
+    @Autowired
+    private JwtUtils jwtUtils;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private final List<String> tokens = new ArrayList<>();
+    
+    @BeforeEach
+    void seed() {
+        List<Object[]> beers = new ArrayList<>();
+        for (int u = 0; u < USERS; u++) {
+            UUID userId = UuidV7.generate();
+            String username = "loaduser" + u;
+            jdbcTemplate.update("INSERT INTO users (id, username, email, password) VALUES (?, ?, ?, 'secret')",
+                    userId, username, username + "@example.com");
+            for (int b = 0; b < BEERS_PER_USER; b++) {
+                LocalDate expiryDate = LocalDate.now().plusDays(b * 7L);
+                beers.add(new Object[] {UuidV7.generate(), expiryDate, expiryDate.minusDays(7), userId});
+            }
+            UserDetailsImpl user = new UserDetailsImpl(userId, username, username + "@example.com", "secret",
+                    List.of());
+            tokens.add(jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(user, null, List.of())));
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO beers (id, brand_name, product_name, type, expiry_date, "
+                + "reminder_date, reminder_sent, reminder_count, user_id) "
+                + "VALUES (?, 'Andechser', 'Doppelbock Dunkel', 'Bock', ?, ?, false, 0, ?)", beers);
+    }
+    
+    @Test
+    void blockingAndReactiveBeerListsAtFullLoad() throws Exception {
+        // Both paths answer with the owner's beers before they are compared
+        HttpResponse<String> listed = get("/api/beers");
+        assertThat(listed.statusCode()).as(listed.body()).isEqualTo(200);
+        assertThat(listed.body()).startsWith("[").contains("Doppelbock Dunkel");
+        HttpResponse<String> streamed = get("/api/reactive/beers");
+        assertThat(streamed.statusCode()).as(streamed.body()).isEqualTo(200);
+        assertThat(streamed.headers().firstValue("Content-Type")).hasValueSatisfying(type ->
+                assertThat(type).startsWith("application/x-ndjson"));
+        assertThat(streamed.body().lines()).hasSize(BEERS_PER_USER);
+        
+        List<Run> runs = List.of(run("/api/beers"), run("/api/reactive/beers"));
+        
+        System.out.printf("%n%-22s %11s %9s %9s %9s %7s %10s %11s %14s %12s%n", "path", "connections", "req/s",
+                "mean ms", "p99 ms", "errors", "open conns", "jvm threads", "tomcat threads", "busy threads");
+        for (Run run : runs) {
+            System.out.printf("%-22s %11d %9.0f %9.1f %9.1f %7d %10d %11d %14d %12d%n", run.path, CONNECTIONS,
+                    run.completed.sum() / (double) SECONDS, run.meanMillis(), run.percentileMillis(0.99),
+                    run.errors.sum(), run.peakConnections.get(), run.peakJvmThreads, run.peakTomcatThreads.get(),
+                    run.peakBusyThreads.get());
+        }
+        
+        for (Run run : runs) {
+            assertThat(run.completed.sum()).as("requests of %s", run.path).isPositive();
+            assertThat(run.errors.sum()).as("failed requests of %s, the first with %s", run.path,
+                    run.firstError.get()).isZero();
+        }
+    }
+    
+    // Keeps CONNECTIONS clients busy on the path for SECONDS after they are all connected
+    private Run run(String path) throws InterruptedException {
+        awaitIdleConnections();
+        // A fixed number of client threads, so they weigh the same in both runs' JVM thread counts
+        ExecutorService clientThreads = Executors.newFixedThreadPool(4);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientThreads)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        long rampMillis = 250L * (CONNECTIONS / RAMP_STEP + 1);
+        long measureFrom = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(rampMillis + 2000);
+        Run run = new Run(path, measureFrom, measureFrom + TimeUnit.SECONDS.toNanos(SECONDS));
+        
+        for (int i = 0; i < CONNECTIONS; i++) {
+            if (i > 0 && i % RAMP_STEP == 0) {
+                Thread.sleep(250);
+            }
+            request(client, clientThreads, request(path, tokens.get(i % tokens.size())), run);
+        }
+        
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        Thread.sleep(Math.max(0, TimeUnit.NANOSECONDS.toMillis(measureFrom - System.nanoTime())));
+        threads.resetPeakThreadCount();
+        sampler.scheduleAtFixedRate(() -> sample(run), 0, 100, TimeUnit.MILLISECONDS);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(SECONDS));
+        run.peakJvmThreads = threads.getPeakThreadCount();
+        sampler.shutdownNow();
+        
+        // Requests still in flight at the end are let finish, but no longer counted
+        assertThat(run.finished.await(2, TimeUnit.MINUTES)).as("clients of %s finished", path).isTrue();
+        clientThreads.shutdown();
+        return run;
+    }
+    
+    private void request(HttpClient client, ExecutorService clientThreads, HttpRequest request, Run run) {
+        long start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenCompleteAsync((response, failure) -> {
+                    long end = System.nanoTime();
+                    run.record(start, end, failure != null ? failure.toString()
+                            : response.statusCode() != 200 ? "HTTP " + response.statusCode() : null);
+                    if (end < run.until) {
+                        request(client, clientThreads, request, run);
+                    } else {
+                        run.finished.countDown();
+                    }
+                }, clientThreads);
+    }
+    
+    private void sample(Run run) {
+        AbstractProtocol<?> protocol = protocol();
+        run.peakConnections.accumulateAndGet((int) protocol.getConnectionCount(), Math::max);
+        if (protocol.getExecutor() instanceof ThreadPoolExecutor executor) {
+            run.peakTomcatThreads.accumulateAndGet(executor.getPoolSize(), Math::max);
+            run.peakBusyThreads.accumulateAndGet(executor.getActiveCount(), Math::max);
+        }
+    }
+    
+    // The previous run's connections count against max-connections until the keep-alive timeout closes them
+    private void awaitIdleConnections() throws InterruptedException {
+        long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (protocol().getConnectionCount() > 1 && System.nanoTime() < until) {
+            Thread.sleep(250);
+        }
+    }
+    
+    private AbstractProtocol<?> protocol() {
+        TomcatWebServer webServer = (TomcatWebServer) webServerContext.getWebServer();
+        return (AbstractProtocol<?>) webServer.getTomcat().getConnector().getProtocolHandler();
+    }
+    
+    private HttpResponse<String> get(String path) throws Exception {
+        return HttpClient.newHttpClient().send(request(path, tokens.get(0)), HttpResponse.BodyHandlers.ofString());
+    }
+    
+    private HttpRequest request(String path, String token) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + webServerContext.getWebServer().getPort()
+                        + path))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(60))
+                .build();
+    }
+    
+    // What one path did while all clients were connected
+    private static class Run {
+        
+        final String path;
+        final long from;
+        final long until;
+        
+        final LongAdder completed = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final AtomicReference<String> firstError = new AtomicReference<>();
+        final Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+        final CountDownLatch finished = new CountDownLatch(CONNECTIONS);
+        
+        final AtomicInteger peakConnections = new AtomicInteger();
+        final AtomicInteger peakTomcatThreads = new AtomicInteger();
+        final AtomicInteger peakBusyThreads = new AtomicInteger();
+        int peakJvmThreads;
+        
+        Run(String path, long from, long until) {
+            this.path = path;
+            this.from = from;
+            this.until = until;
+        }
+        
+        // error is null for a request answered with 200
+        void record(long start, long end, String error) {
+            if (end < from || end >= until) {
+                return;
+            }
+            if (error == null) {
+                completed.increment();
+                latencies.add(end - start);
+            } else {
+                errors.increment();
+                firstError.compareAndSet(null, error);
+            }
+        }
+        
+        double meanMillis() {
+            return latencies.stream().mapToLong(Long::longValue).average().orElse(0) / 1_000_000;
+        }
+        
+        double percentileMillis(double percentile) {
+            List<Long> sorted = latencies.stream().sorted().toList();
+            return sorted.isEmpty() ? 0 : sorted.get((int) Math.min(sorted.size() - 1,
+                    Math.ceil(percentile * sorted.size()) - 1)) / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.beerexpirytracker.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UuidV7Test {
+    
+    @Test
+    void setsVersionSevenAndTheRfcVariant() {
+        UUID id = UuidV7.generate();
+        
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+    }
+    
+    @Test
+    void carriesTheCurrentTimeInTheFirst48Bits() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7.generate();
+        long after = System.currentTimeMillis();
+        
+        // Within one millisecond the counter can borrow from the next one
+        assertThat(id.getMostSignificantBits() >>> 16).isBetween(before, after + 1);
+    }
+    
+    @Test
+    void idsIncreaseInTheOrderPostgresSortsThem() {
+        // PostgreSQL compares uuids byte by byte, which is the order of their lower-case text form
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            ids.add(UuidV7.generate().toString());
+        }
+        
+        assertThat(ids).isSorted();
+        assertThat(new HashSet<>(ids)).hasSize(ids.size());
+    }
+}
@@ -0,0 +1,152 @@
+package com.beerexpirytracker.repository;
+
+import com.beerexpirytracker.dto.ReminderBulkUpdateRequest;
+import com.beerexpirytracker.model.BeerKey;
+import com.beerexpirytracker.model.UuidV7;
+import com.beerexpirytracker.testsupport.EmbeddedDatabases;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Reminder bookkeeping on the migrated schema: claims by beer key, and snoozes and dismissals against
+// lead-time recomputes
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(BeerReminderJdbcRepository.class)
+class BeerReminderJdbcRepositoryTest {
+    
+    @SpringBootConfiguration
+    static class Config {
+    }
+    
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> EmbeddedDatabases.createDatabase("reminders"));
+        registry.add("spring.datasource.username", () -> EmbeddedDatabases.USERNAME);
+        registry.add("spring.datasource.password", () -> EmbeddedDatabases.PASSWORD);
+    }
+    
+    @Autowired
+    private BeerReminderJdbcRepository beerReminderJdbcRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    // UTC like the owner below, so the snooze counts from this date
+    private final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    
+    private UUID userId;
+    
+    @BeforeEach
+    void createUser() {
+        userId = UuidV7.generate();
+        jdbcTemplate.update("INSERT INTO users (id, username, email, password, time_zone) "
+                + "VALUES (?, 'hopper', 'hopper@example.com', 'secret', 'UTC')", userId);
+    }
+    
+    @Test
+    void recomputeFollowsTheLeadTime() {
+        UUID beerId = beer(today.plusDays(60), today.plusDays(53));
+        
+        recompute(14);
+        
+        assertThat(reminderDate(beerId)).isEqualTo(today.plusDays(46));
+    }
+    
+    @Test
+    void recomputeKeepsASnooze() {
+        UUID beerId = beer(today.plusDays(60), today.plusDays(2));
+        snooze(beerId, 40);
+        
+        // A longer lead time would bring the reminder before the snooze ends
+        recompute(30);
+        assertThat(reminderDate(beerId)).isEqualTo(today.plusDays(42));
+        
+        // A shorter one moves it past the snooze anyway
+        recompute(3);
+        assertThat(reminderDate(beerId)).isEqualTo(today.plusDays(57));
+        
+        // And back to the snooze, not before it
+        recompute(30);
+        assertThat(reminderDate(beerId)).isEqualTo(today.plusDays(42));
+    }
+    
+    @Test
+    void recomputeSkipsDismissedBeers() {
+        UUID beerId = beer(today.plusDays(60), today.plusDays(53));
+        ReminderBulkUpdateRequest selection = new ReminderBulkUpdateRequest();
+        selection.setIds(List.of(beerId));
+        beerReminderJdbcRepository.bulkUpdateReminders(userId, selection, null, "UTC");
+        
+        recompute(14);
+        
+        assertThat(reminderDate(beerId)).isEqualTo(today.plusDays(53));
+    }
+    
+    @Test
+    void claimsAndMarksBeersByKey() {
+        UUID first = beer(today.plusDays(10), today);
+        UUID second = beer(today.plusDays(200), today);
+        List<BeerKey> beers = List.of(new BeerKey(first, today.plusDays(10)), new BeerKey(second, today.plusDays(200)));
+        
+        assertThat(beerReminderJdbcRepository.claim(beers, 60_000)).containsExactlyInAnyOrderElementsOf(beers);
+        assertThat(beerReminderJdbcRepository.claim(beers, 60_000)).isEmpty();
+        assertThat(beerReminderJdbcRepository.findClaimed(beers)).containsExactlyInAnyOrderElementsOf(beers);
+        
+        assertThat(beerReminderJdbcRepository.markReminded(beers.subList(0, 1), "UTC")).isEqualTo(1);
+        assertThat(beerReminderJdbcRepository.recordFailures(beers.subList(1, 2))).isEqualTo(1);
+        assertThat(beerReminderJdbcRepository.releaseClaims(beers)).isEqualTo(2);
+        assertThat(beerReminderJdbcRepository.findClaimed(beers)).isEmpty();
+        
+        assertThat(jdbcTemplate.queryForObject("SELECT reminder_count FROM beers WHERE id = ?", Integer.class, first))
+                .isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT reminder_failure_count FROM beers WHERE id = ?",
+                Integer.class, second)).isEqualTo(1);
+        
+        // A key with the wrong expiry date doesn't match the beer
+        assertThat(beerReminderJdbcRepository.claim(List.of(new BeerKey(first, today.plusDays(11))), 60_000))
+                .isEmpty();
+    }
+    
+    private UUID beer(LocalDate expiryDate, LocalDate reminderDate) {
+        UUID beerId = UuidV7.generate();
+        jdbcTemplate.update("INSERT INTO beers (id, brand_name, product_name, expiry_date, reminder_date, "
+                + "reminder_sent, reminder_count, user_id) VALUES (?, 'Schneider', 'Aventinus', ?, ?, false, 0, ?)",
+                beerId, expiryDate, reminderDate, userId);
+        return beerId;
+    }
+    
+    private void snooze(UUID beerId, int days) {
+        ReminderBulkUpdateRequest selection = new ReminderBulkUpdateRequest();
+        selection.setIds(List.of(beerId));
+        beerReminderJdbcRepository.bulkUpdateReminders(userId, selection, days, "UTC");
+    }
+    
+    // What ReminderPolicyService does after a lead-time change, with no policies stored
+    private void recompute(int defaultLeadDays) {
+        UUID afterId = new UUID(0, 0);
+        UUID upToId;
+        while ((upToId = beerReminderJdbcRepository.nextRecomputeChunkEnd(userId, null, afterId, 100)) != null) {
+            beerReminderJdbcRepository.recomputeReminderDates(userId, null, afterId, upToId, defaultLeadDays);
+            afterId = upToId;
+        }
+    }
+    
+    private LocalDate reminderDate(UUID beerId) {
+        return jdbcTemplate.queryForObject("SELECT reminder_date FROM beers WHERE id = ?", LocalDate.class, beerId);
+    }
+}
@@ -0,0 +1,225 @@
+package com.beerexpirytracker.repository;
+
+import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.model.UuidV7;
+import com.beerexpirytracker.testsupport.EmbeddedDatabases;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// EXPLAINs the statements Hibernate actually sends for the hot queries, against the migrated schema with
+// analyzed sample data, and checks each is answered from the index V3/V5/V7 created for it. Sequential scans
+// are switched off: partitions of a few hundred rows fit in a page or two, where the planner would rightly
+// prefer them, and the point is which index it picks once the tables are big.
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.cache.use_query_cache=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(UserDirectoryJdbcRepository.class)
+class QueryPlanTest {
+    
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = Beer.class)
+    @EnableJpaRepositories(basePackageClasses = BeerRepository.class)
+    static class Config {
+        
+        @Bean
+        RecordingInspector recordingInspector() {
+            return new RecordingInspector();
+        }
+        
+        @Bean
+        HibernatePropertiesCustomizer statementInspector(RecordingInspector recordingInspector) {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, recordingInspector);
+        }
+    }
+    
+    // Remembers the SQL of every statement Hibernate prepares
+    static class RecordingInspector implements StatementInspector {
+        
+        private final List<String> statements = new ArrayList<>();
+        
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+        
+        String last() {
+            return statements.get(statements.size() - 1);
+        }
+    }
+    
+    @DynamicPropertySource
+    static void database(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> EmbeddedDatabases.createDatabase("query-plans"));
+        registry.add("spring.datasource.username", () -> EmbeddedDatabases.USERNAME);
+        registry.add("spring.datasource.password", () -> EmbeddedDatabases.PASSWORD);
+    }
+    
+    @Autowired
+    private BeerRepository beerRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private UserDirectoryJdbcRepository userDirectoryRepository;
+    
+    @Autowired
+    private RecordingInspector recordingInspector;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private final LocalDate today = LocalDate.now();
+    
+    @BeforeEach
+    void seed() {
+        // 200 users with 30 beers each, expiring over two years around today and reminded 3 to 30 days ahead;
+        // every tenth beer has used up its reminders. @DataJpaTest rolls it all back after each test.
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> beers = new ArrayList<>();
+        for (int u = 0; u < 200; u++) {
+            UUID userId = UuidV7.generate();
+            users.add(new Object[] {userId, "user" + u, "user" + u + "@example.com", "secret"});
+            for (int b = 0; b < 30; b++) {
+                LocalDate expiryDate = today.minusDays(365).plusDays((u * 31L + b * 97L) % 730);
+                beers.add(new Object[] {UuidV7.generate(), expiryDate, expiryDate.minusDays(3 + (u + b) % 28),
+                        b % 10 == 0 ? 5 : 0, userId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (id, username, email, password) VALUES (?, ?, ?, ?)", users);
+        jdbcTemplate.batchUpdate("INSERT INTO beers (id, brand_name, product_name, expiry_date, reminder_date, "
+                + "reminder_sent, reminder_count, user_id) VALUES (?, 'Augustiner', 'Edelstoff', ?, ?, false, ?, ?)",
+                beers);
+        jdbcTemplate.execute("ANALYZE users, beers");
+        // Transaction-scoped like the rows
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+    }
+    
+    @Test
+    void expiryCalendarUsesTheUserExpiryIndex() {
+        UUID userId = UuidV7.generate();
+        LocalDate end = today.plusMonths(2);
+        beerRepository.findByUserIdAndExpiryDateBetweenOrderByExpiryDateAsc(userId, today, end);
+        
+        assertIndexScans(explain(recordingInspector.last(), userId, today, end), "idx_beers_user_expiry");
+    }
+    
+    @Test
+    void beerListUsesTheUserExpiryIndex() {
+        UUID userId = UuidV7.generate();
+        beerRepository.findByUserId(userId);
+        
+        assertIndexScans(explain(recordingInspector.last(), userId), "idx_beers_user_expiry");
+    }
+    
+    @Test
+    void reminderCandidatesUseTheReminderDueIndex() {
+        LocalDate to = today.plusDays(1);
+        UUID afterId = new UUID(0, 0);
+        beerRepository.findReminderCandidates(today, to, today, afterId, PageRequest.of(0, 500));
+        
+        JsonNode plan = explain(recordingInspector.last(), today, to, today, afterId, 500);
+        assertIndexScans(plan, "idx_beers_reminder_due", "users_pkey");
+    }
+    
+    @Test
+    void dueReminderCountUsesTheReminderDueIndex() {
+        LocalDate from = today.minusDays(1);
+        beerRepository.countDueUnsent(from, today);
+        
+        assertIndexScans(explain(recordingInspector.last(), from, today, today, today), "idx_beers_reminder_due");
+    }
+    
+    @Test
+    void usernameAndEmailLookupsUseTheUniqueConstraints() {
+        userRepository.findByUsername("hopper");
+        assertIndexScans(explain(recordingInspector.last(), "hopper"), "uk_users_username");
+        
+        userRepository.findByEmail("hopper@example.com");
+        assertIndexScans(explain(recordingInspector.last(), "hopper@example.com"), "uk_users_email");
+    }
+    
+    @Test
+    void directoryLookupsUseTheUniqueConstraints() {
+        userDirectoryRepository.insert(UuidV7.generate(), "hopper", "hopper@example.com");
+        
+        assertIndexScans(explain("SELECT user_id FROM user_directory WHERE username = ?", "hopper"),
+                "uk_user_directory_username");
+        assertIndexScans(explain("SELECT 1 FROM user_directory WHERE email = ?", "hopper@example.com"),
+                "uk_user_directory_email");
+    }
+    
+    @Test
+    void userIdLookupsUseTheUsersPrimaryKey() {
+        UUID userId = UuidV7.generate();
+        userRepository.findById(userId);
+        
+        assertIndexScans(explain(recordingInspector.last(), userId), "users_pkey");
+    }
+    
+    private JsonNode explain(String sql, Object... args) {
+        String json = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class, args);
+        try {
+            return objectMapper.readTree(json).get(0).get("Plan");
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable plan: " + json, e);
+        }
+    }
+    
+    // Every table in the plan is read through one of the given indexes (or their per-partition copies), and
+    // none of them sequentially
+    private void assertIndexScans(JsonNode plan, String... indexes) {
+        Set<String> expected = new HashSet<>();
+        for (String index : indexes) {
+            expected.add(index);
+            expected.addAll(jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i "
+                    + "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = ?::regclass", String.class, index));
+        }
+        List<String> used = new ArrayList<>();
+        List<String> sequential = new ArrayList<>();
+        collectScans(plan, used, sequential);
+        
+        assertThat(sequential).as("sequentially scanned in %s", plan).isEmpty();
+        assertThat(used).as("indexes of %s", plan).isNotEmpty().allMatch(expected::contains);
+    }
+    
+    private void collectScans(JsonNode node, List<String> used, List<String> sequential) {
+        if (node.path("Node Type").asText().equals("Seq Scan")) {
+            sequential.add(node.path("Relation Name").asText());
+        }
+        if (node.has("Index Name")) {
+            used.add(node.get("Index Name").asText());
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectScans(child, used, sequential);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.beerexpirytracker.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+    
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+    
+    @Test
+    void rejectsAcquireBeyondTheLimitUntilAPermitIsReleased() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 10, 2, 100, 0.5);
+        
+        assertThat(limiter.tryAcquire(0, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(limiter.tryAcquire(0, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(limiter.tryAcquire(10, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+        
+        limiter.release(FAST, true);
+        assertThat(limiter.tryAcquire(0, TimeUnit.MILLISECONDS)).isTrue();
+    }
+    
+    @Test
+    void growsByAboutOnePerRoundTripWhileFast() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 10, 4, 100, 0.5);
+        
+        // A full window of fast calls adds one
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+            limiter.release(FAST, true);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(4);
+        limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+        limiter.release(FAST, true);
+        assertThat(limiter.getLimit()).isEqualTo(5);
+    }
+    
+    @Test
+    void backsOffOnSlowOrFailedCallsDownToTheMinimum() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 10, 8, 100, 0.5);
+        
+        limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+        limiter.release(SLOW, true);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+        
+        limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+        limiter.release(FAST, false);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+        
+        limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+        limiter.release(FAST, false);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+    
+    @Test
+    void neverGrowsPastTheMaximum() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 3, 3, 100, 0.5);
+        
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire(0, TimeUnit.MILLISECONDS);
+            limiter.release(FAST, true);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(3);
+    }
+}
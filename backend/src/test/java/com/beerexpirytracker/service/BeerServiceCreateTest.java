@@ -0,0 +1,113 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.model.ImageState;
+import com.beerexpirytracker.model.User;
+import com.beerexpirytracker.model.UuidV7;
+import com.beerexpirytracker.repository.BeerArchiveJdbcRepository;
+import com.beerexpirytracker.repository.BeerReminderJdbcRepository;
+import com.beerexpirytracker.repository.BeerRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+// Counts the statements createBeer sends: with the id assigned up front and the image attached before
+// saving, a new beer is written by exactly one INSERT
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@Import(BeerService.class)
+class BeerServiceCreateTest {
+    
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = Beer.class)
+    @EnableJpaRepositories(basePackageClasses = BeerRepository.class)
+    static class Config {
+    }
+    
+    @Autowired
+    private BeerService beerService;
+    
+    @Autowired
+    private TestEntityManager entityManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @MockBean
+    private ReminderWheelService reminderWheelService;
+    
+    @MockBean
+    private BeerReminderJdbcRepository beerReminderJdbcRepository;
+    
+    @MockBean
+    private BeerArchiveJdbcRepository beerArchiveJdbcRepository;
+    
+    @MockBean
+    private ReminderReleasePolicy releasePolicy;
+    
+    @MockBean
+    private ReminderPolicyService reminderPolicyService;
+    
+    @MockBean
+    private ImageProcessingService imageProcessingService;
+    
+    @MockBean
+    private BeerImageService beerImageService;
+    
+    private User user;
+    private Statistics statistics;
+    
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setId(UuidV7.generate());
+        user.setUsername("hopper");
+        user.setEmail("hopper@example.com");
+        user.setPassword("secret-password");
+        entityManager.persistAndFlush(user);
+        
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+    
+    @Test
+    void createBeerWithAnImageIssuesOneInsertAndNoUpdate() throws Exception {
+        // Stands in for storing the upload: attach only sets the image columns on the unsaved beer
+        doAnswer(invocation -> {
+            Beer beer = invocation.getArgument(0);
+            beer.setImageUrl("uploads/" + beer.getId() + ".jpg");
+            beer.setImageState(ImageState.PENDING);
+            return null;
+        }).when(imageProcessingService).attach(any(), any());
+        MockMultipartFile image = new MockMultipartFile("image", "beer.jpg", "image/jpeg", new byte[] {1, 2, 3});
+        
+        beerService.createBeer("Augustiner", "Lagerbier Hell", "Lager", LocalDate.now().plusMonths(6), image,
+                user.getId());
+        entityManager.flush();
+        
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(1);
+        assertThat(statistics.getEntityUpdateCount()).isZero();
+        // No select either: save() persists the new beer instead of merging it
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
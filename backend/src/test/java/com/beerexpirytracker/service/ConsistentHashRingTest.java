@@ -0,0 +1,78 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.model.UuidV7;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConsistentHashRingTest {
+    
+    private static final int KEYS = 100_000;
+    
+    private static final List<String> THREE_SHARDS = List.of("shard0", "shard1", "shard2");
+    private static final List<String> FOUR_SHARDS = List.of("shard0", "shard1", "shard2", "shard3");
+    
+    private final List<UUID> keys = new ArrayList<>();
+    
+    ConsistentHashRingTest() {
+        for (int i = 0; i < KEYS; i++) {
+            keys.add(UuidV7.generate());
+        }
+    }
+    
+    @Test
+    void placesKeysTheSameWayWhateverOrderTheNodesComeIn() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(THREE_SHARDS, 160);
+        ConsistentHashRing<String> reordered = new ConsistentHashRing<>(List.of("shard2", "shard0", "shard1"), 160);
+        
+        for (UUID key : keys) {
+            assertThat(reordered.nodeFor(key)).isEqualTo(ring.nodeFor(key));
+        }
+    }
+    
+    @Test
+    void spreadsTimeOrderedKeysEvenly() {
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(FOUR_SHARDS, 160);
+        
+        Map<String, Integer> counts = new HashMap<>();
+        for (UUID key : keys) {
+            counts.merge(ring.nodeFor(key), 1, Integer::sum);
+        }
+        
+        assertThat(counts).hasSize(4);
+        // Within 20% of a quarter each
+        assertThat(counts.values()).allSatisfy(count ->
+                assertThat(count).isBetween(KEYS / 4 * 8 / 10, KEYS / 4 * 12 / 10));
+    }
+    
+    @Test
+    void addingANodeMovesAboutItsShareAndOnlyToTheNewNode() {
+        ConsistentHashRing<String> before = new ConsistentHashRing<>(THREE_SHARDS, 160);
+        ConsistentHashRing<String> after = new ConsistentHashRing<>(FOUR_SHARDS, 160);
+        
+        int moved = 0;
+        for (UUID key : keys) {
+            String previous = before.nodeFor(key);
+            String current = after.nodeFor(key);
+            if (!current.equals(previous)) {
+                assertThat(current).isEqualTo("shard3");
+                moved++;
+            }
+        }
+        
+        assertThat(moved).isBetween(KEYS / 4 * 8 / 10, KEYS / 4 * 12 / 10);
+    }
+    
+    @Test
+    void rejectsARingWithoutNodes() {
+        assertThatThrownBy(() -> new ConsistentHashRing<>(List.of(), 160))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,67 @@
+package com.beerexpirytracker.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HierarchicalTimingWheelTest {
+    
+    private static final long TICK = 1000;
+    
+    // 10 ticks on level 0, 100 on level 1, 1000 in total
+    private final HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, 10, 2, 0);
+    
+    @Test
+    void firesOnTheFirstTickBoundaryAfterTheDeadline() {
+        wheel.add("a", 2500);
+        
+        assertThat(advance(2999)).isEmpty();
+        assertThat(advance(3000)).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+    
+    @Test
+    void cascadesEntriesFromTheHigherLevel() {
+        wheel.add("far", 45_500);
+        wheel.add("near", 5_000);
+        
+        assertThat(advance(6_000)).containsExactly("near");
+        assertThat(advance(45_999)).isEmpty();
+        assertThat(advance(46_000)).containsExactly("far");
+    }
+    
+    @Test
+    void pastDeadlinesFireOnTheNextAdvance() {
+        advance(10_000);
+        wheel.add("late", 3_000);
+        
+        assertThat(advance(10_000)).containsExactly("late");
+    }
+    
+    @Test
+    void rejectsDeadlinesBeyondTheTopLevel() {
+        assertThat(wheel.add("too-far", 100_000)).isFalse();
+        assertThat(wheel.add("fits", 99_999)).isTrue();
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+    
+    @Test
+    void firesEveryEntryExactlyOnceWhenJumpingAhead() {
+        for (int i = 0; i < 90; i++) {
+            wheel.add("beer-" + i, i * TICK + 1);
+        }
+        
+        List<String> fired = advance(95_000);
+        assertThat(fired).hasSize(90).doesNotHaveDuplicates();
+        assertThat(advance(99_000)).isEmpty();
+    }
+    
+    private List<String> advance(long nowMillis) {
+        List<String> fired = new ArrayList<>();
+        wheel.advance(nowMillis, (item, deadline) -> fired.add(item));
+        return fired;
+    }
+}
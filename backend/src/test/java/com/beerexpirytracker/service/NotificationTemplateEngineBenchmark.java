@@ -0,0 +1,87 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.model.Beer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Rendering cost of the notification templates, per message and for a run of one million messages.
+// Run with ./gradlew jmh --args='NotificationTemplateEngineBenchmark'.
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class NotificationTemplateEngineBenchmark {
+    
+    private static final int MESSAGES = 1_000_000;
+    
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 19);
+    
+    private NotificationTemplateEngine engine;
+    private List<Beer> beers;
+    private List<String> deviceTokens;
+    
+    @Setup
+    public void setUp() {
+        engine = new NotificationTemplateEngine();
+        ReflectionTestUtils.setField(engine, "defaultLocaleTag", "en");
+        engine.init();
+        
+        // Brand names with quotes and non-ASCII, so escaping is part of the cost
+        beers = new ArrayList<>();
+        for (int i = 0; i < 1024; i++) {
+            beers.add(NotificationTemplateEngineTest.beer(i % 3 == 0 ? "Brew \"Dog\" " + i : "Wei\u00dfbr\u00e4u " + i,
+                    "Hefeweizen", TODAY.plusDays(i % 120)));
+        }
+        deviceTokens = List.of("d1Yx0-token-for-the-first-device", "f8Qz3-token-for-the-second-device");
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public String pushPayload() {
+        return engine.renderPushPayload(beers.get(0), deviceTokens, TODAY, Locale.ENGLISH);
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public String reminderText() {
+        return engine.renderReminder(beers.get(1), TODAY, Locale.GERMAN);
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public String digestOfTen() {
+        return engine.renderDigest(beers.subList(0, 10), TODAY, Locale.ENGLISH);
+    }
+    
+    // One million push payloads across users of several locales; reported per message
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(MESSAGES)
+    public void millionPushPayloads(Blackhole blackhole) {
+        Locale[] locales = {Locale.ENGLISH, Locale.GERMAN, Locale.forLanguageTag("de-AT")};
+        for (int i = 0; i < MESSAGES; i++) {
+            blackhole.consume(engine.renderPushPayload(beers.get(i & 1023), deviceTokens, TODAY, locales[i % 3]));
+        }
+    }
+}
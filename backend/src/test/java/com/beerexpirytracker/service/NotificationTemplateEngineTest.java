@@ -0,0 +1,66 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.model.Beer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotificationTemplateEngineTest {
+    
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 19);
+    
+    private NotificationTemplateEngine engine;
+    
+    @BeforeEach
+    void setUp() {
+        engine = new NotificationTemplateEngine();
+        ReflectionTestUtils.setField(engine, "defaultLocaleTag", "en");
+        engine.init();
+    }
+    
+    @Test
+    void countsDaysAcrossMonths() {
+        String text = engine.renderReminder(beer("Augustiner", "Hell", TODAY.plusDays(75)), TODAY, Locale.ENGLISH);
+        
+        assertThat(text).isEqualTo("Reminder: Augustiner Hell will expire on January 2, 2027 (in 75 days). "
+                + "Please check your inventory.");
+    }
+    
+    @Test
+    void escapesValuesInPushPayloads() {
+        String payload = engine.renderPushPayload(beer("Brew \"Dog\"", "Punk\\IPA\n", TODAY.plusDays(3)),
+                List.of("token\"1"), TODAY, Locale.ENGLISH);
+        
+        assertThat(payload).contains("\"registration_ids\":[\"token\\\"1\"]")
+                .contains("Brew \\\"Dog\\\" Punk\\\\IPA\\n will expire");
+    }
+    
+    @Test
+    void sharesTemplatesBetweenLocalesOfTheSameBundle() {
+        String german = engine.renderSubject(Locale.GERMAN);
+        
+        assertThat(engine.renderSubject(Locale.forLanguageTag("de-AT"))).isEqualTo(german);
+        assertThat(engine.renderSubject(Locale.forLanguageTag("de-CH-x-custom"))).isEqualTo(german);
+        String english = engine.renderSubject(Locale.ENGLISH);
+        assertThat(engine.renderSubject(Locale.forLanguageTag("fr-CA"))).isEqualTo(english);
+        assertThat(engine.renderSubject(Locale.forLanguageTag("zz-QQ"))).isEqualTo(english);
+        // One set for the base bundle and one for German, whatever tags users pick
+        assertThat(engine.cachedTemplateSets()).isEqualTo(2);
+    }
+    
+    static Beer beer(String brand, String product, LocalDate expiryDate) {
+        Beer beer = new Beer();
+        beer.setId(UUID.randomUUID());
+        beer.setBrandName(brand);
+        beer.setProductName(product);
+        beer.setExpiryDate(expiryDate);
+        return beer;
+    }
+}
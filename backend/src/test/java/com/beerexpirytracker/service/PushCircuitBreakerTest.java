@@ -0,0 +1,97 @@
+package com.beerexpirytracker.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PushCircuitBreakerTest {
+    
+    private final AtomicLong nanos = new AtomicLong();
+    private final List<String> transitions = new ArrayList<>();
+    private PushCircuitBreaker breaker;
+    
+    @BeforeEach
+    void setUp() {
+        breaker = new PushCircuitBreaker(3, Duration.ofSeconds(30),
+                (from, to) -> transitions.add(from + "->" + to), nanos::get);
+    }
+    
+    @Test
+    void opensAfterConsecutiveFailuresAndClosesAfterSuccessfulTrial() {
+        assertThat(breaker.isCallPermitted()).isTrue();
+        for (int i = 0; i < 3; i++) {
+            assertThat(breaker.tryAcquirePermission()).isTrue();
+            breaker.recordFailure();
+        }
+        assertThat(breaker.getState()).isEqualTo(PushCircuitBreaker.State.OPEN);
+        assertThat(breaker.isCallPermitted()).isFalse();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        
+        // Once the open duration has passed, callers checking first must still get to the trial call
+        advance(Duration.ofSeconds(30));
+        assertThat(breaker.isCallPermitted()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(PushCircuitBreaker.State.HALF_OPEN);
+        
+        // Only one trial at a time
+        assertThat(breaker.isCallPermitted()).isFalse();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        
+        breaker.recordSuccess();
+        assertThat(breaker.getState()).isEqualTo(PushCircuitBreaker.State.CLOSED);
+        assertThat(breaker.isCallPermitted()).isTrue();
+        assertThat(transitions).containsExactly("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED");
+    }
+    
+    @Test
+    void failedTrialReopensForAnotherOpenDuration() {
+        for (int i = 0; i < 3; i++) {
+            breaker.tryAcquirePermission();
+            breaker.recordFailure();
+        }
+        advance(Duration.ofSeconds(30));
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.recordFailure();
+        
+        assertThat(breaker.getState()).isEqualTo(PushCircuitBreaker.State.OPEN);
+        advance(Duration.ofSeconds(29));
+        assertThat(breaker.isCallPermitted()).isFalse();
+        advance(Duration.ofSeconds(1));
+        assertThat(breaker.isCallPermitted()).isTrue();
+    }
+    
+    @Test
+    void successResetsTheFailureCount() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        
+        assertThat(breaker.getState()).isEqualTo(PushCircuitBreaker.State.CLOSED);
+    }
+    
+    @Test
+    void releasedTrialPermissionLetsAnotherCallTry() {
+        for (int i = 0; i < 3; i++) {
+            breaker.tryAcquirePermission();
+            breaker.recordFailure();
+        }
+        advance(Duration.ofSeconds(30));
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.releasePermission();
+        
+        assertThat(breaker.isCallPermitted()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+    
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
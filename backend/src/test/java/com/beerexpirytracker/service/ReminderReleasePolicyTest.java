@@ -0,0 +1,142 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReminderReleasePolicyTest {
+    
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+    
+    // A Monday
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 19);
+    
+    private ReminderReleasePolicy policy;
+    
+    @BeforeEach
+    void setUp() {
+        policy = policy(0);
+    }
+    
+    @Test
+    void releasesAtWindowStartInTheUsersZone() {
+        Beer beer = beer(user("Europe/Berlin"), MONDAY, MONDAY.plusDays(30));
+        
+        Instant release = policy.nextRelease(beer, at(MONDAY, "06:00", BERLIN));
+        
+        assertThat(release).isEqualTo(at(MONDAY, "09:00", BERLIN));
+        assertThat(policy.isDue(beer, at(MONDAY, "08:59", BERLIN))).isFalse();
+        assertThat(policy.isDue(beer, at(MONDAY, "09:00", BERLIN))).isTrue();
+    }
+    
+    @Test
+    void usesTheUsersOwnWindow() {
+        User user = user("America/New_York");
+        user.setReminderWindowStart(LocalTime.of(18, 0));
+        user.setReminderWindowEnd(LocalTime.of(20, 0));
+        Beer beer = beer(user, MONDAY, MONDAY.plusDays(30));
+        
+        ZoneId newYork = ZoneId.of("America/New_York");
+        assertThat(policy.nextRelease(beer, at(MONDAY, "10:00", newYork))).isEqualTo(at(MONDAY, "18:00", newYork));
+    }
+    
+    @Test
+    void sendsRightAwayWhileTheWindowIsStillOpen() {
+        Beer beer = beer(user("Europe/Berlin"), MONDAY, MONDAY.plusDays(30));
+        Instant now = at(MONDAY, "12:00", BERLIN);
+        
+        assertThat(policy.nextRelease(beer, now)).isEqualTo(now);
+    }
+    
+    @Test
+    void movesToTheNextDayAfterTheWindowClosed() {
+        Beer beer = beer(user("Europe/Berlin"), MONDAY, MONDAY.plusDays(30));
+        
+        assertThat(policy.nextRelease(beer, at(MONDAY, "18:00", BERLIN)))
+                .isEqualTo(at(MONDAY.plusDays(1), "09:00", BERLIN));
+    }
+    
+    @Test
+    void skipsWeekends() {
+        LocalDate friday = MONDAY.plusDays(4);
+        Beer beer = beer(user("Europe/Berlin"), friday, MONDAY.plusDays(30));
+        beer.setLastReminderDate(friday);
+        
+        assertThat(policy.nextRelease(beer, at(friday, "10:00", BERLIN)))
+                .isEqualTo(at(MONDAY.plusDays(7), "09:00", BERLIN));
+    }
+    
+    @Test
+    void waitsForTheReminderDate() {
+        Beer beer = beer(user("Europe/Berlin"), MONDAY.plusDays(2), MONDAY.plusDays(30));
+        
+        assertThat(policy.nextRelease(beer, at(MONDAY, "12:00", BERLIN)))
+                .isEqualTo(at(MONDAY.plusDays(2), "09:00", BERLIN));
+    }
+    
+    @Test
+    void stopsAfterFiveRemindersOrAtExpiry() {
+        Beer reminded = beer(user("Europe/Berlin"), MONDAY, MONDAY.plusDays(30));
+        reminded.setReminderCount(5);
+        Beer expiring = beer(user("Europe/Berlin"), MONDAY, MONDAY);
+        
+        assertThat(policy.nextRelease(reminded, at(MONDAY, "06:00", BERLIN))).isNull();
+        assertThat(policy.nextRelease(expiring, at(MONDAY, "06:00", BERLIN))).isNull();
+    }
+    
+    @Test
+    void jitterSpreadsReleasesInsideTheWindow() {
+        ReminderReleasePolicy jittered = policy(3600);
+        for (int i = 0; i < 50; i++) {
+            Beer beer = beer(user("Europe/Berlin"), MONDAY, MONDAY.plusDays(30));
+            
+            Instant release = jittered.nextRelease(beer, at(MONDAY, "06:00", BERLIN));
+            
+            assertThat(release).isBetween(at(MONDAY, "09:00", BERLIN), at(MONDAY, "10:00", BERLIN));
+            // Stable per user
+            assertThat(jittered.nextRelease(beer, at(MONDAY, "06:00", BERLIN))).isEqualTo(release);
+        }
+    }
+    
+    private ReminderReleasePolicy policy(int jitterSeconds) {
+        ReminderReleasePolicy releasePolicy = new ReminderReleasePolicy();
+        ReflectionTestUtils.setField(releasePolicy, "jitterSeconds", jitterSeconds);
+        ReflectionTestUtils.setField(releasePolicy, "skipWeekends", true);
+        ReflectionTestUtils.setField(releasePolicy, "defaultTimeZone", "UTC");
+        ReflectionTestUtils.setField(releasePolicy, "defaultWindowStartValue", "09:00");
+        ReflectionTestUtils.setField(releasePolicy, "defaultWindowEndValue", "17:00");
+        releasePolicy.init();
+        return releasePolicy;
+    }
+    
+    private static User user(String timeZone) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setTimeZone(timeZone);
+        return user;
+    }
+    
+    private static Beer beer(User user, LocalDate reminderDate, LocalDate expiryDate) {
+        Beer beer = new Beer();
+        beer.setId(UUID.randomUUID());
+        beer.setUser(user);
+        beer.setReminderDate(reminderDate);
+        beer.setExpiryDate(expiryDate);
+        return beer;
+    }
+    
+    private static Instant at(LocalDate date, String time, ZoneId zone) {
+        return ZonedDateTime.of(date, LocalTime.parse(time), zone).toInstant();
+    }
+}
@@ -0,0 +1,256 @@
+package com.beerexpirytracker.service;
+
+import com.beerexpirytracker.config.DataSourceConfig;
+import com.beerexpirytracker.model.Beer;
+import com.beerexpirytracker.model.User;
+import com.beerexpirytracker.model.UuidV7;
+import com.beerexpirytracker.repository.AccountDeletionJdbcRepository;
+import com.beerexpirytracker.repository.BeerRepository;
+import com.beerexpirytracker.repository.ImageFileDeletionJdbcRepository;
+import com.beerexpirytracker.repository.ShardMoveJdbcRepository;
+import com.beerexpirytracker.repository.UserRepository;
+import com.beerexpirytracker.testsupport.EmbeddedDatabases;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Three shards, each its own embedded PostgreSQL database, behind DataSourceConfig's routing: migrations
+// on every shard, users' rows on the shard the hash ring picks, fan-out over all shards, and moving the users
+// a newly appended shard takes over. Each shard is also read directly to see where rows really are.
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// Shards can only be switched outside a transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({DataSourceConfig.class, UserShardRouter.class, ShardRebalanceService.class, ShardMoveJdbcRepository.class,
+        AccountDeletionJdbcRepository.class, ImageBlobService.class, ImageFileDeletionJdbcRepository.class,
+        ImageCache.class})
+class UserShardingTest {
+    
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = Beer.class)
+    @EnableJpaRepositories(basePackageClasses = BeerRepository.class)
+    static class Config {
+        
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+    
+    private static final Map<String, String> SHARD_URLS = new LinkedHashMap<>();
+    
+    @DynamicPropertySource
+    static void shards(DynamicPropertyRegistry registry) throws IOException {
+        for (int i = 0; i < 3; i++) {
+            SHARD_URLS.put("shard-" + i, EmbeddedDatabases.createDatabase("shards"));
+        }
+        Path uploadDir = Files.createTempDirectory("uploads");
+        registry.add("spring.datasource.url", () -> SHARD_URLS.get("shard-0"));
+        registry.add("spring.datasource.username", () -> EmbeddedDatabases.USERNAME);
+        registry.add("spring.datasource.password", () -> EmbeddedDatabases.PASSWORD);
+        registry.add("datasource.shards.urls", () -> SHARD_URLS.get("shard-1") + "," + SHARD_URLS.get("shard-2"));
+        registry.add("file.upload-dir", uploadDir::toString);
+    }
+    
+    @Autowired
+    private UserShardRouter userShardRouter;
+    
+    @Autowired
+    private ShardRebalanceService shardRebalanceService;
+    
+    @Autowired
+    private ImageBlobService imageBlobService;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private BeerRepository beerRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Test
+    void everyShardIsMigrated() {
+        for (String shard : userShardRouter.getShards()) {
+            assertThat(shardDatabase(shard).queryForObject(
+                    "SELECT version FROM flyway_schema_history ORDER BY installed_rank DESC LIMIT 1", String.class))
+                    .as(shard).isEqualTo("10");
+        }
+    }
+    
+    @Test
+    void usersRowsLandOnTheirShard() {
+        List<UUID> userIds = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            UUID userId = UuidV7.generate();
+            userIds.add(userId);
+            userShardRouter.runForUser(userId, () -> transactionTemplate.executeWithoutResult(status -> {
+                User user = userRepository.save(user(userId));
+                beerRepository.save(beer(user));
+            }));
+        }
+        
+        Map<String, Integer> usersPerShard = new HashMap<>();
+        for (UUID userId : userIds) {
+            String shard = userShardRouter.shardOf(userId);
+            usersPerShard.merge(shard, 1, Integer::sum);
+            for (String other : userShardRouter.getShards()) {
+                int expected = other.equals(shard) ? 1 : 0;
+                assertThat(count(other, "users", "id", userId)).as("%s on %s", userId, other).isEqualTo(expected);
+                assertThat(count(other, "beers", "user_id", userId)).as("%s on %s", userId, other)
+                        .isEqualTo(expected);
+            }
+        }
+        assertThat(usersPerShard).hasSize(3);
+    }
+    
+    @Test
+    void fanOutRunsOnEveryShard() {
+        Map<String, String> databases = userShardRouter.fanOut(shard ->
+                jdbcTemplate.queryForObject("SELECT current_database()", String.class));
+        
+        assertThat(databases).containsOnlyKeys(userShardRouter.getShards());
+        databases.forEach((shard, database) -> assertThat(database).isEqualTo(
+                shardDatabase(shard).queryForObject("SELECT current_database()", String.class)));
+    }
+    
+    @Test
+    void rebalanceMovesExactlyTheUsersTheAppendedShardTakesOver() throws IOException {
+        // Where users were placed while shard-2 wasn't configured yet
+        ConsistentHashRing<String> before = new ConsistentHashRing<>(List.of("shard-0", "shard-1"), 160);
+        Map<UUID, String> placed = new LinkedHashMap<>();
+        for (int i = 0; i < 60; i++) {
+            UUID userId = UuidV7.generate();
+            placed.put(userId, before.nodeFor(userId));
+            seedUser(userId, before.nodeFor(userId));
+        }
+        long rehashed = placed.entrySet().stream()
+                .filter(user -> !user.getValue().equals(userShardRouter.shardOf(user.getKey()))).count();
+        assertThat(rehashed).isPositive();
+        
+        Map<String, Object> report = shardRebalanceService.rebalance();
+        
+        assertThat(report.get("usersMoved")).isEqualTo((int) rehashed);
+        placed.forEach((userId, source) -> {
+            String target = userShardRouter.shardOf(userId);
+            String hash = blobHash(userId);
+            assertThat(count(target, "users", "id", userId)).isEqualTo(1);
+            assertThat(count(target, "beers", "user_id", userId)).isEqualTo(2);
+            assertThat(count(target, "user_devices", "user_id", userId)).isEqualTo(1);
+            assertThat(refCount(target, hash)).isEqualTo(1);
+            String imageUrl = shardDatabase(target).queryForObject(
+                    "SELECT image_url FROM beers WHERE user_id = ? AND image_hash IS NOT NULL", String.class, userId);
+            assertThat(imageUrl).isEqualTo(imageBlobService.pathFor(target, hash, ".jpg").toString());
+            assertThat(Path.of(imageUrl)).exists();
+            if (!target.equals(source)) {
+                assertThat(count(source, "users", "id", userId)).isZero();
+                assertThat(count(source, "beers", "user_id", userId)).isZero();
+                assertThat(count(source, "user_devices", "user_id", userId)).isZero();
+                assertThat(refCount(source, hash)).isZero();
+            }
+        });
+    }
+    
+    // A user with a device and two beers, one of them showing a stored image blob
+    private void seedUser(UUID userId, String shard) throws IOException {
+        JdbcTemplate database = shardDatabase(shard);
+        database.update("INSERT INTO users (id, username, email, password) VALUES (?, ?, ?, 'secret')",
+                userId, username(userId), userId + "@example.com");
+        database.update("INSERT INTO user_devices (id, user_id, token, created_at, last_seen_at) "
+                + "VALUES (?, ?, ?, now(), now())", UuidV7.generate(), userId, "token-" + userId);
+        
+        String hash = blobHash(userId);
+        Path original = imageBlobService.pathFor(shard, hash, ".jpg");
+        Files.createDirectories(original.getParent());
+        Files.write(original, new byte[] {1, 2, 3});
+        database.update("INSERT INTO image_blobs (hash, original_path, size_bytes, ref_count, created_at) "
+                + "VALUES (?, ?, 3, 1, now())", hash, original.toString());
+        
+        LocalDate expiryDate = LocalDate.now().plusMonths(3);
+        String insertBeer = "INSERT INTO beers (id, brand_name, product_name, expiry_date, reminder_date, "
+                + "reminder_sent, reminder_count, user_id, image_url, image_state, image_hash) "
+                + "VALUES (?, 'Ayinger', 'Celebrator', ?, ?, false, 0, ?, ?, ?, ?)";
+        database.update(insertBeer, UuidV7.generate(), expiryDate, expiryDate.minusDays(7), userId,
+                original.toString(), "READY", hash);
+        database.update(insertBeer, UuidV7.generate(), expiryDate, expiryDate.minusDays(7), userId,
+                null, null, null);
+    }
+    
+    // 64 hex digits, like a SHA-256, unique to the user
+    private String blobHash(UUID userId) {
+        return userId.toString().replace("-", "").repeat(2);
+    }
+    
+    // The random tail of the id, to fit the 20 characters
+    private String username(UUID userId) {
+        return "user-" + userId.toString().substring(24);
+    }
+    
+    private User user(UUID userId) {
+        User user = new User();
+        user.setId(userId);
+        user.setUsername(username(userId));
+        user.setEmail(userId + "@example.com");
+        user.setPassword("secret-password");
+        return user;
+    }
+    
+    private Beer beer(User user) {
+        Beer beer = new Beer();
+        beer.setId(UuidV7.generate());
+        beer.setBrandName("Tegernseer");
+        beer.setProductName("Hell");
+        beer.setExpiryDate(LocalDate.now().plusMonths(6));
+        beer.setReminderDate(LocalDate.now().plusMonths(6).minusDays(7));
+        beer.setUser(user);
+        return beer;
+    }
+    
+    private int count(String shard, String table, String column, UUID userId) {
+        return shardDatabase(shard).queryForObject(
+                "SELECT count(*) FROM " + table + " WHERE " + column + " = ?", Integer.class, userId);
+    }
+    
+    private int refCount(String shard, String hash) {
+        return shardDatabase(shard).queryForObject("SELECT ref_count FROM image_blobs WHERE hash = ?",
+                Integer.class, hash);
+    }
+    
+    // Straight to the shard's database, past the routing
+    private JdbcTemplate shardDatabase(String shard) {
+        return new JdbcTemplate(new DriverManagerDataSource(SHARD_URLS.get(shard), EmbeddedDatabases.USERNAME,
+                EmbeddedDatabases.PASSWORD));
+    }
+}
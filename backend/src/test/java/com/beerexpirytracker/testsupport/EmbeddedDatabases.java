@@ -0,0 +1,76 @@
+package com.beerexpirytracker.testsupport;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded PostgreSQL servers for tests that need the real database: query plans, partitions, and
+ * several databases behind the replica and shard routing. A server is a separate postgres process,
+ * started on first use and shared by every test in the JVM; each test creates its own databases on it.
+ */
+public final class EmbeddedDatabases {
+    
+    public static final String USERNAME = "postgres";
+    public static final String PASSWORD = "postgres";
+    
+    private static final Map<String, EmbeddedPostgres> SERVERS = new ConcurrentHashMap<>();
+    
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    
+    private EmbeddedDatabases() {
+    }
+    
+    // An empty database on the named server, as a JDBC URL
+    public static String createDatabase(String server) {
+        EmbeddedPostgres postgres = SERVERS.computeIfAbsent(server, name -> start());
+        String database = "beerexpiry_" + DATABASES.incrementAndGet();
+        try (Connection connection = postgres.getPostgresDatabase().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE " + database);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not create database " + database, e);
+        }
+        return postgres.getJdbcUrl(USERNAME, database);
+    }
+    
+    // A database with the application's migrations applied
+    public static String createMigratedDatabase(String server) {
+        String url = createDatabase(server);
+        // As spring.flyway.postgresql.transactional-lock=false
+        Flyway.configure()
+                .dataSource(url, USERNAME, PASSWORD)
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+        return url;
+    }
+    
+    // Stops the named server, so the URLs of its databases stop accepting connections
+    public static void stop(String server) {
+        EmbeddedPostgres postgres = SERVERS.remove(server);
+        if (postgres != null) {
+            try {
+                postgres.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+    
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start an embedded PostgreSQL server", e);
+        }
+    }
+}